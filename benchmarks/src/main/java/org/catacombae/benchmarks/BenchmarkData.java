@@ -0,0 +1,65 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+
+/**
+ * Creates the data that the benchmarks read. The contents are generated from
+ * a fixed seed, so that every run reads the same bytes.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+final class BenchmarkData {
+
+    private static final long SEED = 0x636174616c6f67L;
+
+    private BenchmarkData() {
+    }
+
+    /** Returns <code>size</code> bytes of reproducible pseudo-random data. */
+    static byte[] create(int size) {
+        byte[] data = new byte[size];
+        new Random(SEED).nextBytes(data);
+        return data;
+    }
+
+    /** Writes <code>data</code> to a new temporary file, which is deleted when the JVM exits. */
+    static File createFile(byte[] data) throws IOException {
+        File file = File.createTempFile("csframework-benchmark", ".bin");
+        file.deleteOnExit();
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    /**
+     * Returns the next value of a xorshift generator, which is cheap enough
+     * not to show up in the measurements.
+     */
+    static long nextRandom(long x) {
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        return x;
+    }
+}
@@ -0,0 +1,138 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.catacombae.io.ReadableByteArrayStream;
+import org.catacombae.io.ReadableConcatenatedStream;
+import org.catacombae.io.ReadableFileStream;
+import org.catacombae.io.ReadableRandomAccessStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Sequential and random read throughput and latency of a
+ * {@link ReadableConcatenatedStream} made of <code>parts</code> equally
+ * sized parts, all of which are ranges of the same backing stream, so that
+ * only the cost of the concatenation varies with the number of parts.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ * @see ReadBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ConcatenatedReadBenchmark {
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int parts;
+
+    @Param({"1", "64", "4096", "65536", "1048576", "8388608"})
+    public int blockSize;
+
+    /** The stream that all parts are ranges of. */
+    @Param({"file", "bytearray"})
+    public String backing;
+
+    /** Size of the data that is read, 64 MiB by default. */
+    @Param({"67108864"})
+    public int dataSize;
+
+    private File file;
+    private ReadableRandomAccessStream backingStream;
+    private ReadableConcatenatedStream concatenated;
+    private byte[] buffer;
+    private long length;
+    private long blockCount;
+    private long nextPos;
+    private long random;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        byte[] data = BenchmarkData.create(dataSize);
+        if ("file".equals(backing)) {
+            file = BenchmarkData.createFile(data);
+            backingStream = new ReadableFileStream(file);
+        } else if ("bytearray".equals(backing)) {
+            backingStream = new ReadableByteArrayStream(data);
+        } else {
+            throw new IllegalArgumentException("Unknown backing stream: " + backing);
+        }
+
+        long partLength = dataSize / parts;
+        concatenated = new ReadableConcatenatedStream(backingStream, 0, partLength);
+        for (int i = 1; i < parts; ++i)
+            concatenated.addPart(backingStream, i * partLength, partLength);
+
+        length = parts * partLength;
+        if (blockSize > length)
+            throw new IllegalArgumentException("blockSize " + blockSize + " > length " + length);
+
+        buffer = new byte[blockSize];
+        blockCount = length / blockSize;
+        nextPos = 0;
+        random = 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        // The parts all share the backing stream, which is closed once here.
+        backingStream.close();
+        if (file != null)
+            file.delete();
+    }
+
+    @Benchmark
+    public int sequentialRead() {
+        if (nextPos + blockSize > blockCount * blockSize) {
+            nextPos = 0;
+            concatenated.seek(0);
+        }
+        nextPos += blockSize;
+
+        concatenated.readFully(buffer);
+        return buffer[0];
+    }
+
+    @Benchmark
+    public int randomRead() {
+        random = BenchmarkData.nextRandom(random);
+        concatenated.seek(Long.remainderUnsigned(random, blockCount) * blockSize);
+        concatenated.readFully(buffer);
+        return buffer[0];
+    }
+}
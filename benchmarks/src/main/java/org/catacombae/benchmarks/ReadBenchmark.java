@@ -0,0 +1,172 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.catacombae.io.ReadableByteArrayStream;
+import org.catacombae.io.ReadableFileStream;
+import org.catacombae.io.ReadableRandomAccessInputStream;
+import org.catacombae.io.ReadableRandomAccessStream;
+import org.catacombae.io.ReadableRandomAccessSubstream;
+import org.catacombae.io.SynchronizedReadableRandomAccessStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Sequential and random read throughput (operations per microsecond; multiply
+ * by <code>blockSize</code> for bytes) and latency (sampled time per
+ * operation) of the basic streams, one block of <code>blockSize</code> bytes
+ * per operation.
+ * <ul>
+ * <li><code>file</code>: {@link ReadableFileStream}</li>
+ * <li><code>bytearray</code>: {@link ReadableByteArrayStream}</li>
+ * <li><code>substream</code>: {@link ReadableRandomAccessSubstream} over a
+ * {@link SynchronizedReadableRandomAccessStream} over a file stream</li>
+ * <li><code>inputstream</code>: {@link ReadableRandomAccessInputStream} over
+ * the same synchronized stream; random reads open a new input stream for each
+ * block</li>
+ * </ul>
+ * The file is written right before the trial, so it is most likely in the
+ * page cache; these benchmarks measure the overhead of the stream stack rather
+ * than of the storage.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ReadBenchmark {
+
+    @Param({"file", "bytearray", "substream", "inputstream"})
+    public String stream;
+
+    @Param({"1", "64", "4096", "65536", "1048576", "8388608"})
+    public int blockSize;
+
+    /** Size of the data that is read, 64 MiB by default. */
+    @Param({"67108864"})
+    public int dataSize;
+
+    private File file;
+    private ReadableRandomAccessStream ras;
+    private SynchronizedReadableRandomAccessStream shared;
+    private InputStream sequentialInput;
+    private byte[] buffer;
+    private long blockCount;
+    private long nextPos;
+    private long random;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        if (blockSize > dataSize)
+            throw new IllegalArgumentException("blockSize " + blockSize + " > dataSize " + dataSize);
+
+        byte[] data = BenchmarkData.create(dataSize);
+        buffer = new byte[blockSize];
+        blockCount = dataSize / blockSize;
+        nextPos = 0;
+        random = 1;
+
+        switch (stream) {
+        case "file":
+            file = BenchmarkData.createFile(data);
+            ras = new ReadableFileStream(file);
+            break;
+        case "bytearray":
+            ras = new ReadableByteArrayStream(data);
+            break;
+        case "substream":
+            file = BenchmarkData.createFile(data);
+            shared = new SynchronizedReadableRandomAccessStream(new ReadableFileStream(file));
+            ras = new ReadableRandomAccessSubstream(shared);
+            break;
+        case "inputstream":
+            file = BenchmarkData.createFile(data);
+            shared = new SynchronizedReadableRandomAccessStream(new ReadableFileStream(file));
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown stream: " + stream);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (ras != null)
+            ras.close();
+        if (shared != null)
+            shared.close();
+        if (file != null)
+            file.delete();
+    }
+
+    @Benchmark
+    public int sequentialRead() throws IOException {
+        if (nextPos + blockSize > blockCount * blockSize) {
+            nextPos = 0;
+            if (ras != null)
+                ras.seek(0);
+            sequentialInput = null;
+        }
+        nextPos += blockSize;
+
+        if (ras == null) {
+            if (sequentialInput == null)
+                sequentialInput = new ReadableRandomAccessInputStream(shared, 0, blockCount * blockSize);
+            sequentialInput.readNBytes(buffer, 0, blockSize);
+        } else {
+            ras.readFully(buffer);
+        }
+        return buffer[0];
+    }
+
+    @Benchmark
+    public int randomRead() throws IOException {
+        random = BenchmarkData.nextRandom(random);
+        long pos = Long.remainderUnsigned(random, blockCount) * blockSize;
+
+        if (ras == null) {
+            try (InputStream in = new ReadableRandomAccessInputStream(shared, pos, blockSize)) {
+                in.readNBytes(buffer, 0, blockSize);
+            }
+        } else {
+            ras.seek(pos);
+            ras.readFully(buffer);
+        }
+        return buffer[0];
+    }
+}
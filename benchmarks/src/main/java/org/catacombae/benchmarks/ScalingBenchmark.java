@@ -0,0 +1,388 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.catacombae.io.BasicSynchronizedReadableRandomAccessStream;
+import org.catacombae.io.ConcurrentReadableRandomAccessStream;
+import org.catacombae.io.ReadableFileStream;
+import org.catacombae.io.ReadableFilterStream;
+import org.catacombae.io.ReadableRandomAccessStream;
+import org.catacombae.io.ReadableRandomAccessSubstream;
+import org.catacombae.io.SynchronizedReadableRandomAccessStream;
+
+
+/**
+ * Scaling harness for many readers sharing one stream. Every reader thread
+ * reads random blocks through its own {@link ReadableRandomAccessSubstream} of
+ * a single {@link SynchronizedReadableRandomAccessStream} (or
+ * {@link ConcurrentReadableRandomAccessStream}), and the harness reports the
+ * throughput, the p50/p99/p999 latency and the time the readers spent
+ * waiting for locks for each thread count.
+ * <p>
+ * This is a plain main class rather than a JMH benchmark, because JMH can
+ * neither run its workers on virtual threads nor report lock contention.
+ * Options, each taking a comma separated list where it makes sense:
+ * <pre>
+ * -threads 1,2,4,..       reader thread counts (powers of two up to the cpu count)
+ * -kind platform,virtual  reader threads; virtual threads need Java 21
+ * -regions disjoint,overlapping
+ *                         each reader in a slice of its own, or all readers
+ *                         anywhere in the stream
+ * -stream synchronized,concurrent
+ * -source positional,serial
+ *                         the file stream as is, whose positional reads
+ *                         bypass the lock, or hidden behind a
+ *                         {@link ReadableFilterStream} so that every read
+ *                         seeks and reads under the lock
+ * -blockSize 4096         bytes per read
+ * -dataSize 67108864      size of the file
+ * -warmup 2 -duration 5   seconds per configuration
+ * -jfr true               record monitor enter and park events for the
+ *                         contention columns
+ * </pre>
+ * The contention columns are the number and total duration of
+ * <code>jdk.JavaMonitorEnter</code> (<code>monitor</code>) and
+ * <code>jdk.ThreadPark</code> (<code>park</code>) events during the
+ * measurement, and for platform threads the blocked time reported by
+ * {@link ThreadMXBean} (<code>blocked</code>), summed over all readers.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public final class ScalingBenchmark {
+
+    /** Latencies kept per reader for the percentiles; more are sampled. */
+    private static final int MAX_SAMPLES = 1 << 16;
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private final int blockSize;
+    private final long warmupMillis;
+    private final long durationMillis;
+    private final boolean jfr;
+
+    private volatile boolean measuring;
+    private volatile boolean stopped;
+
+    private ScalingBenchmark(int blockSize, long warmupMillis, long durationMillis, boolean jfr) {
+        this.blockSize = blockSize;
+        this.warmupMillis = warmupMillis;
+        this.durationMillis = durationMillis;
+        this.jfr = jfr;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+
+        int[] threads = parseInts(options.getOrDefault("threads", defaultThreadCounts()));
+        String[] kinds = options.getOrDefault("kind", "platform,virtual").split(",");
+        String[] regions = options.getOrDefault("regions", "disjoint,overlapping").split(",");
+        String[] streams = options.getOrDefault("stream", "synchronized,concurrent").split(",");
+        String[] sources = options.getOrDefault("source", "positional,serial").split(",");
+        int blockSize = Integer.parseInt(options.getOrDefault("blockSize", "4096"));
+        int dataSize = Integer.parseInt(options.getOrDefault("dataSize", "67108864"));
+        long warmup = Long.parseLong(options.getOrDefault("warmup", "2")) * 1000;
+        long duration = Long.parseLong(options.getOrDefault("duration", "5")) * 1000;
+        boolean jfr = Boolean.parseBoolean(options.getOrDefault("jfr", "true"));
+
+        if (threadMXBean.isThreadContentionMonitoringSupported())
+            threadMXBean.setThreadContentionMonitoringEnabled(true);
+
+        Map<String, ThreadFactory> factories = new LinkedHashMap<>();
+        for (String kind : kinds) {
+            ThreadFactory factory = threadFactory(kind);
+            if (factory != null)
+                factories.put(kind, factory);
+            else
+                System.out.println("Skipping " + kind + " threads, which need Java 21.");
+        }
+
+        ScalingBenchmark benchmark = new ScalingBenchmark(blockSize, warmup, duration, jfr);
+        File file = BenchmarkData.createFile(BenchmarkData.create(dataSize));
+        try {
+            System.out.printf("%-12s %-10s %-11s %-8s %7s %12s %10s %9s %9s %9s %18s %18s %11s%n",
+                    "stream", "source", "regions", "kind", "threads", "ops/s", "MiB/s",
+                    "p50 us", "p99 us", "p999 us", "monitor n/ms", "park n/ms", "blocked ms");
+            for (String stream : streams) {
+                for (String source : sources) {
+                    for (String region : regions) {
+                        for (Map.Entry<String, ThreadFactory> kind : factories.entrySet()) {
+                            for (int n : threads) {
+                                benchmark.run(file, stream, source, region, kind.getKey(), kind.getValue(), n);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void run(File file, String stream, String source, String region, String kind,
+                     ThreadFactory factory, int threadCount) throws Exception {
+        ReadableRandomAccessStream sourceStream = new ReadableFileStream(file);
+        if ("serial".equals(source))
+            sourceStream = new ReadableFilterStream(sourceStream);
+        else if (!"positional".equals(source))
+            throw new IllegalArgumentException("Unknown source: " + source);
+
+        BasicSynchronizedReadableRandomAccessStream shared;
+        if ("synchronized".equals(stream))
+            shared = new SynchronizedReadableRandomAccessStream(sourceStream);
+        else if ("concurrent".equals(stream))
+            shared = new ConcurrentReadableRandomAccessStream(sourceStream);
+        else
+            throw new IllegalArgumentException("Unknown stream: " + stream);
+
+        long blockCount = shared.length() / blockSize;
+        long slice = blockCount / threadCount;
+        if (slice == 0)
+            throw new IllegalArgumentException("Less than one block per thread.");
+
+        Reader[] readers = new Reader[threadCount];
+        Thread[] workers = new Thread[threadCount];
+        for (int i = 0; i < threadCount; ++i) {
+            ReadableRandomAccessStream view = new ReadableRandomAccessSubstream(shared);
+            if ("disjoint".equals(region))
+                readers[i] = new Reader(view, i * slice, slice, i + 1);
+            else if ("overlapping".equals(region))
+                readers[i] = new Reader(view, 0, blockCount, i + 1);
+            else
+                throw new IllegalArgumentException("Unknown regions: " + region);
+            workers[i] = factory.newThread(readers[i]);
+        }
+
+        measuring = false;
+        stopped = false;
+        for (Thread worker : workers)
+            worker.start();
+
+        Thread.sleep(warmupMillis);
+        Recording recording = null;
+        if (jfr) {
+            recording = new Recording();
+            recording.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ZERO).withStackTrace();
+            recording.enable("jdk.ThreadPark").withThreshold(Duration.ZERO);
+            recording.start();
+        }
+        long start = System.nanoTime();
+        measuring = true;
+        Thread.sleep(durationMillis);
+        stopped = true;
+        long elapsed = System.nanoTime() - start;
+        for (Thread worker : workers)
+            worker.join();
+
+        long[] monitor = new long[2];
+        long[] park = new long[2];
+        if (recording != null) {
+            recording.stop();
+            Path dump = Files.createTempFile("csframework-scaling", ".jfr");
+            try {
+                recording.dump(dump);
+                for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                    long[] sum = event.getEventType().getName().equals("jdk.JavaMonitorEnter") ? monitor : park;
+                    sum[0]++;
+                    sum[1] += event.getDuration().toNanos();
+                }
+            } finally {
+                recording.close();
+                Files.deleteIfExists(dump);
+            }
+        }
+
+        for (Reader reader : readers)
+            reader.stream.close();
+        shared.close();
+
+        long ops = 0;
+        long blockedMillis = -1;
+        List<long[]> samples = new ArrayList<>();
+        for (Reader reader : readers) {
+            if (reader.failure != null)
+                throw new IOException("Reader failed.", reader.failure);
+            ops += reader.ops;
+            if (reader.blockedMillis >= 0)
+                blockedMillis = Math.max(blockedMillis, 0) + reader.blockedMillis;
+            samples.add(Arrays.copyOf(reader.samples, reader.sampleCount));
+        }
+        long[] latencies = samples.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+
+        double seconds = elapsed / 1e9;
+        System.out.printf(Locale.ROOT, "%-12s %-10s %-11s %-8s %7d %12.0f %10.1f %9.1f %9.1f %9.1f %18s %18s %11s%n",
+                stream, source, region, kind, threadCount, ops / seconds,
+                ops * (double) blockSize / seconds / (1024 * 1024),
+                percentile(latencies, 0.5) / 1e3, percentile(latencies, 0.99) / 1e3,
+                percentile(latencies, 0.999) / 1e3,
+                jfr ? monitor[0] + "/" + monitor[1] / 1000000 : "-",
+                jfr ? park[0] + "/" + park[1] / 1000000 : "-",
+                blockedMillis >= 0 ? Long.toString(blockedMillis) : "-");
+    }
+
+    /** One reader thread, reading random blocks of its region. */
+    private final class Reader implements Runnable {
+
+        final ReadableRandomAccessStream stream;
+        private final long firstBlock;
+        private final long blockCount;
+        private final byte[] buffer = new byte[blockSize];
+        private long random;
+
+        final long[] samples = new long[MAX_SAMPLES];
+        int sampleCount;
+        long ops;
+        long blockedMillis = -1;
+        Throwable failure;
+
+        Reader(ReadableRandomAccessStream stream, long firstBlock, long blockCount, long seed) {
+            this.stream = stream;
+            this.firstBlock = firstBlock;
+            this.blockCount = blockCount;
+            this.random = seed * 0x9e3779b97f4a7c15L;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!measuring && !stopped)
+                    read();
+
+                long blockedStart = blockedMillis();
+                while (!stopped) {
+                    long start = System.nanoTime();
+                    read();
+                    record(System.nanoTime() - start);
+                }
+                long blockedEnd = blockedMillis();
+                if (blockedStart >= 0 && blockedEnd >= 0)
+                    blockedMillis = blockedEnd - blockedStart;
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+
+        private void read() {
+            random = BenchmarkData.nextRandom(random);
+            stream.seek((firstBlock + Long.remainderUnsigned(random, blockCount)) * blockSize);
+            stream.readFully(buffer);
+        }
+
+        /** Keeps a uniform sample of the latencies once the buffer is full. */
+        private void record(long nanos) {
+            ++ops;
+            if (sampleCount < samples.length) {
+                samples[sampleCount++] = nanos;
+            } else {
+                random = BenchmarkData.nextRandom(random);
+                long i = Long.remainderUnsigned(random, ops);
+                if (i < samples.length)
+                    samples[(int) i] = nanos;
+            }
+        }
+    }
+
+    /**
+     * Returns the time the current thread has been blocked on monitors, or -1
+     * if it isn't known (virtual threads, or no contention monitoring).
+     */
+    private static long blockedMillis() {
+        if (!threadMXBean.isThreadContentionMonitoringEnabled())
+            return -1;
+        ThreadInfo info = threadMXBean.getThreadInfo(Thread.currentThread().getId());
+        return info != null ? info.getBlockedTime() : -1;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0)
+            return Double.NaN;
+        return sorted[(int) Math.min(sorted.length - 1, (long) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    /**
+     * Returns a factory for <code>kind</code> threads, or null if they aren't
+     * available in this JVM. Virtual threads are looked up reflectively, so
+     * that the harness builds for Java 17 and uses them when run on 21+.
+     */
+    private static ThreadFactory threadFactory(String kind) throws ReflectiveOperationException {
+        if ("platform".equals(kind)) {
+            return r -> {
+                Thread t = new Thread(r, "scaling-reader");
+                t.setDaemon(true);
+                return t;
+            };
+        } else if ("virtual".equals(kind)) {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            } catch (NoSuchMethodException e) {
+                return null;
+            } catch (InvocationTargetException e) {
+                // Preview API on Java 19 and 20 without --enable-preview.
+                if (e.getCause() instanceof UnsupportedOperationException)
+                    return null;
+                throw e;
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown thread kind: " + kind);
+        }
+    }
+
+    private static String defaultThreadCounts() {
+        StringBuilder sb = new StringBuilder("1");
+        int cpus = Runtime.getRuntime().availableProcessors();
+        for (int n = 2; n <= cpus; n *= 2)
+            sb.append(',').append(n);
+        return sb.toString();
+    }
+
+    private static int[] parseInts(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; ++i) {
+            if (!args[i].startsWith("-") || i + 1 == args.length)
+                throw new IllegalArgumentException("Usage: ScalingBenchmark [-option value]...");
+            options.put(args[i].substring(1), args[++i]);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,219 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.benchmarks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.catacombae.util.ArrayKernels;
+import org.catacombae.util.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * The array helpers of {@link Util} against their JDK counterparts:
+ * {@link ByteBuffer} views and {@link VarHandle} loops for the array
+ * decoders, {@link Arrays#equals(byte[], int, int, byte[], int, int)},
+ * {@link Arrays#compareUnsigned(byte[], int, int, byte[], int, int)} and
+ * {@link Arrays#mismatch(byte[], int, int, byte[], int, int)} for the
+ * comparisons, {@link HexFormat}, {@link String} and
+ * {@link Arrays#copyOfRange(byte[], int, int)}. The region of
+ * <code>size</code> bytes starts <code>offset</code> bytes into the array.
+ * The compared regions are equal, so that they are scanned to the end.
+ * <p>
+ * {@link ArrayKernels} use the Vector API only if the forks are run with
+ * <code>-jvmArgsAppend --add-modules=jdk.incubator.vector</code>.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilArrayBenchmark {
+
+    private static final VarHandle SHORT_LE =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BE =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    @Param({"16", "256", "4096", "65536"})
+    public int size;
+
+    @Param({"0", "1"})
+    public int offset;
+
+    private byte[] data;
+    /** A copy of the region of <code>data</code>, starting at 0. */
+    private byte[] region;
+    private byte[] text;
+    private int[] ints;
+
+    @Setup
+    public void setup() {
+        data = BenchmarkData.create(size + offset);
+        region = Arrays.copyOfRange(data, offset, offset + size);
+        ints = new int[size / 4];
+        text = new byte[size + offset];
+        for (int i = 0; i < text.length; ++i)
+            text[i] = (byte) ('a' + i % 26);
+    }
+
+    @Benchmark
+    public int[] readIntArrayBEUtil() {
+        return Util.readIntArrayBE(data, offset, size);
+    }
+
+    @Benchmark
+    public int[] readIntArrayBEVarHandle() {
+        int[] result = new int[size / 4];
+        for (int i = 0; i < result.length; ++i)
+            result[i] = (int) INT_BE.get(data, offset + i * 4);
+        return result;
+    }
+
+    @Benchmark
+    public int[] readIntArrayBEByteBuffer() {
+        int[] result = new int[size / 4];
+        ByteBuffer.wrap(data, offset, size).slice().order(ByteOrder.BIG_ENDIAN).asIntBuffer().get(result);
+        return result;
+    }
+
+    @Benchmark
+    public int[] readIntArrayBEArrayKernels() {
+        ArrayKernels.readIntArrayBE(data, offset, ints, 0, ints.length);
+        return ints;
+    }
+
+    @Benchmark
+    public short[] readShortArrayLEUtil() {
+        return Util.readShortArrayLE(data, offset, size);
+    }
+
+    @Benchmark
+    public short[] readShortArrayLEVarHandle() {
+        short[] result = new short[size / 2];
+        for (int i = 0; i < result.length; ++i)
+            result[i] = (short) SHORT_LE.get(data, offset + i * 2);
+        return result;
+    }
+
+    @Benchmark
+    public short[] readShortArrayLEByteBuffer() {
+        short[] result = new short[size / 2];
+        ByteBuffer.wrap(data, offset, size).slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(result);
+        return result;
+    }
+
+    /** Reverses the region in place; an even number of calls restores it. */
+    @Benchmark
+    public byte[] byteSwapUtil() {
+        return Util.byteSwap(data, offset, size);
+    }
+
+    @Benchmark
+    public byte[] byteSwapArrayKernels() {
+        ArrayKernels.byteSwap(data, offset, size);
+        return data;
+    }
+
+    @Benchmark
+    public boolean arrayRegionsEqualUtil() {
+        return Util.arrayRegionsEqual(region, 0, size, data, offset, size);
+    }
+
+    @Benchmark
+    public boolean arrayRegionsEqualArrays() {
+        return Arrays.equals(region, 0, size, data, offset, offset + size);
+    }
+
+    @Benchmark
+    public int unsignedArrayCompareLexUtil() {
+        return Util.unsignedArrayCompareLex(region, 0, size, data, offset, size);
+    }
+
+    @Benchmark
+    public int unsignedArrayCompareLexArrays() {
+        return Arrays.compareUnsigned(region, 0, size, data, offset, offset + size);
+    }
+
+    @Benchmark
+    public int unsignedArrayCompareLexMismatch() {
+        int i = Arrays.mismatch(region, 0, size, data, offset, offset + size);
+        return i < 0 ? 0 : (region[i] & 0xFF) - (data[offset + i] & 0xFF);
+    }
+
+    @Benchmark
+    public String toHexStringUtil() {
+        return Util.byteArrayToHexString(data, offset, size);
+    }
+
+    @Benchmark
+    public String toHexStringHexFormat() {
+        return HexFormat.of().formatHex(data, offset, offset + size);
+    }
+
+    @Benchmark
+    public String toHexStringBEIntUtil() {
+        return Util.toHexStringBE(Util.readIntBE(data, offset));
+    }
+
+    @Benchmark
+    public String toHexStringBEIntHexFormat() {
+        return HexFormat.of().toHexDigits(Util.readIntBE(data, offset));
+    }
+
+    @Benchmark
+    public String readStringUtil() {
+        return Util.readString(text, offset, size, "US-ASCII");
+    }
+
+    @Benchmark
+    public String readStringCharset() {
+        return new String(text, offset, size, StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public byte[] createCopyUtil() {
+        return Util.createCopy(data, offset, size);
+    }
+
+    @Benchmark
+    public byte[] createCopyArrays() {
+        return Arrays.copyOfRange(data, offset, offset + size);
+    }
+}
@@ -0,0 +1,189 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.benchmarks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.catacombae.util.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * The scalar primitive decoders and byte swaps of {@link Util} against
+ * {@link VarHandle} views, {@link ByteBuffer} and the
+ * <code>reverseBytes</code> intrinsics. Every operation decodes all values of
+ * a <code>size</code> byte region starting <code>offset</code> bytes into the
+ * array, so that unaligned access is measured as well.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilCodecBenchmark {
+
+    private static final VarHandle SHORT_BE =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_BE =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    @Param({"64", "4096", "65536"})
+    public int size;
+
+    @Param({"0", "1", "3"})
+    public int offset;
+
+    private byte[] data;
+    private ByteBuffer bigEndian;
+    private ByteBuffer littleEndian;
+    private int[] ints;
+    private long[] longs;
+
+    @Setup
+    public void setup() {
+        data = BenchmarkData.create(size + offset);
+        bigEndian = ByteBuffer.wrap(data).order(ByteOrder.BIG_ENDIAN);
+        littleEndian = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        ints = Util.readIntArrayBE(data, offset, size);
+        longs = Util.readLongArrayBE(data, offset, size);
+    }
+
+    @Benchmark
+    public int readShortBEUtil() {
+        int sum = 0;
+        for (int i = offset, end = offset + size; i < end; i += 2)
+            sum += Util.readShortBE(data, i);
+        return sum;
+    }
+
+    @Benchmark
+    public int readShortBEVarHandle() {
+        int sum = 0;
+        for (int i = offset, end = offset + size; i < end; i += 2)
+            sum += (short) SHORT_BE.get(data, i);
+        return sum;
+    }
+
+    @Benchmark
+    public int readShortBEByteBuffer() {
+        int sum = 0;
+        for (int i = offset, end = offset + size; i < end; i += 2)
+            sum += bigEndian.getShort(i);
+        return sum;
+    }
+
+    @Benchmark
+    public int readIntBEUtil() {
+        int sum = 0;
+        for (int i = offset, end = offset + size; i < end; i += 4)
+            sum += Util.readIntBE(data, i);
+        return sum;
+    }
+
+    @Benchmark
+    public int readIntBEVarHandle() {
+        int sum = 0;
+        for (int i = offset, end = offset + size; i < end; i += 4)
+            sum += (int) INT_BE.get(data, i);
+        return sum;
+    }
+
+    @Benchmark
+    public int readIntBEByteBuffer() {
+        int sum = 0;
+        for (int i = offset, end = offset + size; i < end; i += 4)
+            sum += bigEndian.getInt(i);
+        return sum;
+    }
+
+    @Benchmark
+    public long readLongLEUtil() {
+        long sum = 0;
+        for (int i = offset, end = offset + size; i < end; i += 8)
+            sum += Util.readLongLE(data, i);
+        return sum;
+    }
+
+    @Benchmark
+    public long readLongLEVarHandle() {
+        long sum = 0;
+        for (int i = offset, end = offset + size; i < end; i += 8)
+            sum += (long) LONG_LE.get(data, i);
+        return sum;
+    }
+
+    @Benchmark
+    public long readLongLEByteBuffer() {
+        long sum = 0;
+        for (int i = offset, end = offset + size; i < end; i += 8)
+            sum += littleEndian.getLong(i);
+        return sum;
+    }
+
+    @Benchmark
+    public int byteSwapIntUtil() {
+        int sum = 0;
+        for (int value : ints)
+            sum += Util.byteSwap(value);
+        return sum;
+    }
+
+    @Benchmark
+    public int byteSwapIntReverseBytes() {
+        int sum = 0;
+        for (int value : ints)
+            sum += Integer.reverseBytes(value);
+        return sum;
+    }
+
+    @Benchmark
+    public long byteSwapLongUtil() {
+        long sum = 0;
+        for (long value : longs)
+            sum += Util.byteSwap(value);
+        return sum;
+    }
+
+    @Benchmark
+    public long byteSwapLongReverseBytes() {
+        long sum = 0;
+        for (long value : longs)
+            sum += Long.reverseBytes(value);
+        return sum;
+    }
+}
@@ -0,0 +1,134 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.util;
+
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * {@link ArrayKernels} on the incubating Vector API. This class is compiled
+ * separately, with the <code>jdk.incubator.vector</code> module added, and is
+ * only loaded by {@link ArrayKernels} if that module is present at run time.
+ * Whole vectors are processed here; the remaining elements are left to
+ * {@link VarHandleArrayKernels}.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+final class VectorArrayKernels extends VarHandleArrayKernels {
+
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    /** Reverses the lanes of a byte vector. */
+    private static final VectorShuffle<Byte> REVERSE =
+            VectorShuffle.fromOp(BYTES, i -> BYTES.length() - 1 - i);
+    /** Reverses the bytes of each short, int or long of a byte vector. */
+    private static final VectorShuffle<Byte> SWAP_SHORTS = VectorShuffle.fromOp(BYTES, i -> i ^ 1);
+    private static final VectorShuffle<Byte> SWAP_INTS = VectorShuffle.fromOp(BYTES, i -> i ^ 3);
+    private static final VectorShuffle<Byte> SWAP_LONGS = VectorShuffle.fromOp(BYTES, i -> i ^ 7);
+
+    @Override
+    String getName() {
+        return "Vector API (" + BYTES.vectorBitSize() + " bits)";
+    }
+
+    @Override
+    void readShortArrayBE(byte[] src, int srcOff, short[] dst, int dstOff, int count) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(count); i < bound; i += SHORTS.length())
+            ShortVector.fromByteArray(SHORTS, src, srcOff + i * 2, ByteOrder.BIG_ENDIAN).intoArray(dst, dstOff + i);
+        super.readShortArrayBE(src, srcOff + i * 2, dst, dstOff + i, count - i);
+    }
+
+    @Override
+    void readCharArrayLE(byte[] src, int srcOff, char[] dst, int dstOff, int count) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(count); i < bound; i += SHORTS.length())
+            ShortVector.fromByteArray(SHORTS, src, srcOff + i * 2, ByteOrder.LITTLE_ENDIAN).intoCharArray(dst, dstOff + i);
+        super.readCharArrayLE(src, srcOff + i * 2, dst, dstOff + i, count - i);
+    }
+
+    @Override
+    void readIntArrayBE(byte[] src, int srcOff, int[] dst, int dstOff, int count) {
+        int i = 0;
+        for (int bound = INTS.loopBound(count); i < bound; i += INTS.length())
+            IntVector.fromByteArray(INTS, src, srcOff + i * 4, ByteOrder.BIG_ENDIAN).intoArray(dst, dstOff + i);
+        super.readIntArrayBE(src, srcOff + i * 4, dst, dstOff + i, count - i);
+    }
+
+    @Override
+    void readLongArrayLE(byte[] src, int srcOff, long[] dst, int dstOff, int count) {
+        int i = 0;
+        for (int bound = LONGS.loopBound(count); i < bound; i += LONGS.length())
+            LongVector.fromByteArray(LONGS, src, srcOff + i * 8, ByteOrder.LITTLE_ENDIAN).intoArray(dst, dstOff + i);
+        super.readLongArrayLE(src, srcOff + i * 8, dst, dstOff + i, count - i);
+    }
+
+    @Override
+    void byteSwap(byte[] data, int offset, int length) {
+        int vl = BYTES.length();
+        int head = offset;
+        int tail = offset + length;
+        while (tail - head >= 2 * vl) {
+            tail -= vl;
+            ByteVector a = ByteVector.fromArray(BYTES, data, head);
+            ByteVector b = ByteVector.fromArray(BYTES, data, tail);
+            b.rearrange(REVERSE).intoArray(data, head);
+            a.rearrange(REVERSE).intoArray(data, tail);
+            head += vl;
+        }
+        super.byteSwap(data, head, tail - head);
+    }
+
+    @Override
+    void byteSwap(short[] data, int offset, int length) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(length); i < bound; i += SHORTS.length())
+            ShortVector.fromArray(SHORTS, data, offset + i).reinterpretAsBytes()
+                    .rearrange(SWAP_SHORTS).reinterpretAsShorts().intoArray(data, offset + i);
+        super.byteSwap(data, offset + i, length - i);
+    }
+
+    @Override
+    void byteSwap(int[] data, int offset, int length) {
+        int i = 0;
+        for (int bound = INTS.loopBound(length); i < bound; i += INTS.length())
+            IntVector.fromArray(INTS, data, offset + i).reinterpretAsBytes()
+                    .rearrange(SWAP_INTS).reinterpretAsInts().intoArray(data, offset + i);
+        super.byteSwap(data, offset + i, length - i);
+    }
+
+    @Override
+    void byteSwap(long[] data, int offset, int length) {
+        int i = 0;
+        for (int bound = LONGS.loopBound(length); i < bound; i += LONGS.length())
+            LongVector.fromArray(LONGS, data, offset + i).reinterpretAsBytes()
+                    .rearrange(SWAP_LONGS).reinterpretAsLongs().intoArray(data, offset + i);
+        super.byteSwap(data, offset + i, length - i);
+    }
+}
@@ -19,7 +19,7 @@ package org.catacombae.csjc;
 
 import java.lang.reflect.Field;
 
-import org.catacombae.util.Util;
+import org.catacombae.util.ByteArrayCodec;
 
 
 /**
@@ -43,7 +43,7 @@ public abstract class MutableStruct {
             if (fieldData.length != 1)
                 throw new IllegalArgumentException("Invalid input! length is not equal to the length of the field data");
             else
-                System.arraycopy(Util.toByteArrayBE(value), 0, fieldData, 0, 1);
+                fieldData[0] = value;
         } else
             accessViolation();
     }
@@ -54,7 +54,7 @@ public abstract class MutableStruct {
             if (fieldData.length != 2)
                 throw new IllegalArgumentException("Invalid input! length is not equal to the length of the field data");
             else
-                System.arraycopy(Util.toByteArrayBE(value), 0, fieldData, 0, fieldData.length);
+                ByteArrayCodec.writeShortBE(fieldData, 0, value);
         } else
             accessViolation();
     }
@@ -65,7 +65,7 @@ public abstract class MutableStruct {
             if (fieldData.length != 2)
                 throw new IllegalArgumentException("Invalid input! length is not equal to the length of the field data");
             else
-                System.arraycopy(Util.toByteArrayBE(value), 0, fieldData, 0, fieldData.length);
+                ByteArrayCodec.writeCharBE(fieldData, 0, value);
         } else
             accessViolation();
     }
@@ -76,7 +76,7 @@ public abstract class MutableStruct {
             if (fieldData.length != 4)
                 throw new IllegalArgumentException("Invalid input! length is not equal to the length of the field data");
             else
-                System.arraycopy(Util.toByteArrayBE(value), 0, fieldData, 0, fieldData.length);
+                ByteArrayCodec.writeIntBE(fieldData, 0, value);
         } else
             accessViolation();
     }
@@ -87,7 +87,7 @@ public abstract class MutableStruct {
             if (fieldData.length != 8)
                 throw new IllegalArgumentException("Invalid input! length is not equal to the length of the field data");
             else
-                System.arraycopy(Util.toByteArrayBE(value), 0, fieldData, 0, fieldData.length);
+                ByteArrayCodec.writeLongBE(fieldData, 0, value);
         } else
             accessViolation();
     }
@@ -19,6 +19,7 @@ package org.catacombae.csjc.structelements;
 
 import java.lang.reflect.Field;
 
+import org.catacombae.util.ByteArrayCodec;
 import org.catacombae.util.Util;
 
 
@@ -51,13 +52,14 @@ class IntegerFieldDataHandle implements DataHandle {
     @Override
     public byte[] getBytesAsCopy() {
         try {
-            byte[] res = switch (length) {
-                case 1 -> Util.toByteArrayBE(field.getByte(object));
-                case 2 -> Util.toByteArrayBE(field.getShort(object));
-                case 4 -> Util.toByteArrayBE(field.getInt(object));
-                case 8 -> Util.toByteArrayBE(field.getLong(object));
+            byte[] res = new byte[length];
+            switch (length) {
+                case 1 -> res[0] = field.getByte(object);
+                case 2 -> ByteArrayCodec.writeShortBE(res, 0, field.getShort(object));
+                case 4 -> ByteArrayCodec.writeIntBE(res, 0, field.getInt(object));
+                case 8 -> ByteArrayCodec.writeLongBE(res, 0, field.getLong(object));
                 default -> throw new RuntimeException(); // Won't happen.
-            };
+            }
 
             return res;
         } catch (IllegalAccessException e) {
@@ -68,7 +70,10 @@ class IntegerFieldDataHandle implements DataHandle {
 
     @Override
     public byte[] getBytesAsCopy(int offset, int length) {
-        return Util.createCopy(getBytesAsCopy(), offset, length);
+        byte[] bytes = getBytesAsCopy();
+        if (offset == 0 && length == bytes.length)
+            return bytes;
+        return Util.createCopy(bytes, offset, length);
     }
 
     @Override
@@ -0,0 +1,54 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+
+/**
+ * Describes how a range of a stream is about to be accessed. Hints are given
+ * through {@link AdvisableRandomAccess#advise(long, long, AccessHint)} and
+ * are purely advisory; a stream may ignore any of them without changing the
+ * results of reads.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ * @see org.catacombae.util.IOUtil#advise(ReadableRandomAccessStream, long, long, AccessHint)
+ */
+public enum AccessHint {
+
+    /** No particular access pattern. Undoes an earlier SEQUENTIAL or RANDOM hint. */
+    NORMAL,
+
+    /**
+     * The data will be read sequentially, e.g. when streaming a large fork.
+     * Read-ahead may be more aggressive and caches may avoid keeping data
+     * that is only read once.
+     */
+    SEQUENTIAL,
+
+    /**
+     * The data will be read in no particular order, e.g. when probing a
+     * B-tree. Read-ahead is pointless and should be avoided.
+     */
+    RANDOM,
+
+    /** The range will be read soon and may be fetched in advance. */
+    WILLNEED,
+
+    /** The range will not be read again soon and need not be kept cached. */
+    DONTNEED
+}
@@ -0,0 +1,51 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+
+/**
+ * Defines a way to tell a stream how it is about to be accessed, so that
+ * caching, read-ahead and mapped implementations can adapt to the access
+ * pattern the caller knows about.
+ * <p>
+ * Like positional reads, advice neither consults nor changes the file
+ * pointer of the stream, and may be given concurrently with positional reads.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ * @see org.catacombae.util.IOUtil#advise(ReadableRandomAccessStream, long, long, AccessHint)
+ */
+public interface AdvisableRandomAccess {
+
+    /**
+     * Declares that the range of <code>length</code> bytes starting at byte
+     * position <code>pos</code> of the stream will be accessed as described
+     * by <code>hint</code>. A <code>length</code> of 0 means up to the end of
+     * the stream. {@link AccessHint#SEQUENTIAL}, {@link AccessHint#RANDOM} and
+     * {@link AccessHint#NORMAL} may be applied to the whole stream rather
+     * than just the range.
+     * <p>
+     * The advice has no effect on the data returned by reads.
+     *
+     * @param pos    the position in the stream where the range starts.
+     * @param length the length of the range, or 0 for the rest of the stream.
+     * @param hint   the expected access pattern.
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred.
+     */
+    void advise(long pos, long length, AccessHint hint) throws RuntimeIOException;
+}
@@ -0,0 +1,54 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * Defines asynchronous positional reads. Instead of blocking the calling
+ * thread until the data is available, <code>readAsync</code> returns a future
+ * that is completed when the read has finished, so that many outstanding
+ * reads don't each need a thread of their own.
+ * <p>
+ * Like {@link PositionalReadable#readAt(long, ByteBuffer)}, asynchronous reads
+ * neither consult nor change the file pointer of the stream.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ * @see org.catacombae.util.IOUtil#readAsync(ReadableRandomAccessStream, long, ByteBuffer)
+ */
+public interface AsyncReadableRandomAccess {
+
+    /**
+     * Starts reading as much data as possible, up to
+     * <code>dst.remaining()</code> bytes, from byte position <code>pos</code>
+     * of the stream into <code>dst</code>. Fewer bytes are read only if the end
+     * of the stream is reached. The position of <code>dst</code> is advanced by
+     * the number of bytes read when the read completes, and <code>dst</code>
+     * must not be accessed by the caller before then.
+     *
+     * @param pos the position in the stream where reading should start.
+     * @param dst the buffer where the output data should be stored.
+     * @return a future completed with the number of bytes that were read, or
+     * -1 if no bytes could be read due to end of stream. I/O errors complete
+     * the future exceptionally with a {@link RuntimeIOException}.
+     */
+    CompletableFuture<Integer> readAsync(long pos, ByteBuffer dst);
+}
@@ -0,0 +1,92 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+
+import org.catacombae.util.IOUtil;
+
+
+/**
+ * Opens an AsynchronousFileChannel for the asynchronous reads of a file
+ * stream the first time one is requested, so that streams which are never
+ * read asynchronously don't pay for a second file handle.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+final class AsynchronousFileChannelHolder {
+
+    private final String path;
+    private volatile AsynchronousFileChannel channel;
+    private volatile boolean closed = false;
+
+    /**
+     * @param path the path of the file, or <code>null</code> if it is unknown,
+     *             in which case reads are delegated to the fallback.
+     */
+    AsynchronousFileChannelHolder(String path) {
+        this.path = path;
+    }
+
+    private AsynchronousFileChannel getChannel() throws IOException {
+        if (closed)
+            throw new RuntimeIOException("Stream is closed!");
+
+        AsynchronousFileChannel result = channel;
+        if (result != null)
+            return result;
+
+        synchronized (this) {
+            if (closed)
+                throw new RuntimeIOException("Stream is closed!");
+            if (channel == null)
+                channel = AsynchronousFileChannel.open(Paths.get(path), StandardOpenOption.READ);
+            return channel;
+        }
+    }
+
+    /**
+     * Reads asynchronously through the channel. If the file has no known path
+     * the read is instead a blocking read of <code>fallback</code>, run with
+     * {@link IOUtil#readAtAsync(PositionalReadable, long, ByteBuffer, java.util.concurrent.Executor)}.
+     */
+    CompletableFuture<Integer> readAsync(long pos, ByteBuffer dst, PositionalReadable fallback) {
+        if (path == null)
+            return IOUtil.readAtAsync(fallback, pos, dst, null);
+
+        try {
+            return IOUtil.readAsync(getChannel(), pos, dst);
+        } catch (IOException ex) {
+            return CompletableFuture.failedFuture(new RuntimeIOException(ex));
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    synchronized void close() throws IOException {
+        closed = true;
+        if (channel != null)
+            channel.close();
+    }
+}
@@ -18,12 +18,22 @@
 
 package org.catacombae.io;
 
+import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.catacombae.io.jfr.StreamReadEvent;
+import org.catacombae.io.jfr.StreamSeekEvent;
+import org.catacombae.util.IOUtil;
 
 import static java.lang.System.getLogger;
 
@@ -34,10 +44,14 @@ import static java.lang.System.getLogger;
  * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
  */
 public abstract class BasicConcatenatedStream<A extends ReadableRandomAccessStream>
-        extends BasicReadableRandomAccessStream {
+        extends BasicReadableRandomAccessStream
+        implements PositionalReadable, TransferableReadable, AsyncReadableRandomAccess {
 
     private static final Logger logger = getLogger(BasicConcatenatedStream.class.getName());
 
+    /** Source of zeroes for filling holes in buffers without a backing array. */
+    private static final byte[] ZEROS = new byte[4096];
+
     protected class Part {
 
         public final A file;
@@ -51,7 +65,135 @@ public abstract class BasicConcatenatedStream<A extends ReadableRandomAccessStre
         }
     }
 
-    protected final List<Part> parts = new ArrayList<>();
+    /**
+     * Immutable snapshot of the parts of the stream together with the virtual
+     * offset where each part starts, for O(log n) lookup of the part that
+     * contains a given position.
+     * <p>
+     * addPart() appends to the backing arrays beyond the <code>count</code> of
+     * any published snapshot and then publishes a new snapshot, so the arrays
+     * are only ever reallocated when they fill up and no snapshot observes a
+     * change.
+     */
+    protected final class PartIndex {
+
+        private final Object[] parts;
+        /** partOffsets[i] is the virtual start of part i. partOffsets[count] is the length of the stream. */
+        private final long[] partOffsets;
+        private final int count;
+
+        private PartIndex(Object[] parts, long[] partOffsets, int count) {
+            this.parts = parts;
+            this.partOffsets = partOffsets;
+            this.count = count;
+        }
+
+        /** Returns the number of parts. */
+        public int size() {
+            return count;
+        }
+
+        /** Returns part number <code>i</code>. */
+        @SuppressWarnings("unchecked")
+        public Part get(int i) {
+            if (i < 0 || i >= count)
+                throw new IndexOutOfBoundsException("part index " + i + " out of range [0, " + count + ")");
+            return (Part) parts[i];
+        }
+
+        /** Returns the virtual offset where part number <code>i</code> starts. */
+        public long getPartStart(int i) {
+            if (i < 0 || i > count)
+                throw new IndexOutOfBoundsException("part index " + i + " out of range [0, " + count + "]");
+            return partOffsets[i];
+        }
+
+        /** Returns the sum of the lengths of all parts. */
+        public long length() {
+            return partOffsets[count];
+        }
+
+        /**
+         * Returns the index of the part containing virtual position
+         * <code>pos</code>, or {@link #size()} if <code>pos</code> is at or
+         * beyond the end of the stream.
+         */
+        public int find(long pos) {
+            if (pos >= partOffsets[count])
+                return count;
+
+            // Find the last part starting at or before pos. Empty parts share
+            // their start with the following part, so they are never chosen.
+            int low = 0;
+            int high = count - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (partOffsets[mid] <= pos)
+                    low = mid;
+                else
+                    high = mid - 1;
+            }
+
+            return low;
+        }
+
+        /**
+         * Returns the number of parts that aren't holes and overlap the region
+         * [<code>pos</code>, <code>pos + len</code>), counting no further than
+         * <code>max</code>. Doesn't allocate.
+         */
+        public int countFileParts(long pos, long len, int max) {
+            long end = Math.min(pos + len, partOffsets[count]);
+            int n = 0;
+            for (int i = find(pos); i < count && partOffsets[i] < end && n < max; ++i) {
+                // Empty parts share their start with the next part and overlap nothing.
+                if (get(i).file != null && partOffsets[i + 1] > partOffsets[i])
+                    ++n;
+            }
+            return n;
+        }
+
+        private PartIndex append(Part p) {
+            Object[] newParts = parts;
+            long[] newPartOffsets = partOffsets;
+            if (count == parts.length) {
+                int newCapacity = Math.max(4, count * 2);
+                newParts = Arrays.copyOf(parts, newCapacity);
+                newPartOffsets = Arrays.copyOf(partOffsets, newCapacity + 1);
+            }
+
+            newParts[count] = p;
+            newPartOffsets[count + 1] = partOffsets[count] + p.length;
+            return new PartIndex(newParts, newPartOffsets, count + 1);
+        }
+    }
+
+    /** The part of a single read or write that falls within one part. */
+    protected final class Segment {
+
+        public final Part part;
+        /** Offset of the segment relative to the start of the part. */
+        public final long posInPart;
+        /** Offset of the segment relative to the start of the read or write. */
+        public final int dataOffset;
+        public final int length;
+
+        private Segment(Part part, long posInPart, int dataOffset, int length) {
+            this.part = part;
+            this.posInPart = posInPart;
+            this.dataOffset = dataOffset;
+            this.length = length;
+        }
+    }
+
+    /** Operation applied to one segment of a parallel read or write. */
+    protected interface SegmentOperation<S> {
+
+        void apply(int segmentIndex, S segment);
+    }
+
+    private volatile PartIndex partIndex = new PartIndex(new Object[0], new long[1], 0);
+    private volatile Executor parallelExecutor = null;
     protected long virtualFP;
 
     protected BasicConcatenatedStream(A firstPart, long startOffset, long length) {
@@ -62,13 +204,13 @@ public abstract class BasicConcatenatedStream<A extends ReadableRandomAccessStre
                 // Negative startOffset means there is an hole segment inserted
                 // before the first byte of the stream.
                 Part missingPart = new Part(null, startOffset, -startOffset);
-                parts.add(missingPart);
+                partIndex = partIndex.append(missingPart);
                 length += startOffset;
                 startOffset = 0;
             }
 
             Part currentPart = new Part(firstPart, startOffset, length);
-            parts.add(currentPart);
+            partIndex = partIndex.append(currentPart);
             virtualFP = 0;
         } finally {
             logger.log(Level.TRACE, "leave: {}, {}, {}", firstPart, startOffset, length);
@@ -99,108 +241,386 @@ public abstract class BasicConcatenatedStream<A extends ReadableRandomAccessStre
     public void addPart(A newFile, long off, long len) {
         logger.log(Level.TRACE, "enter: {}, {}, {}", newFile, off, len);
 
+        if (len < 0)
+            throw new IllegalArgumentException("len is negative: " + len);
+
         Part newPart = new Part(newFile, off, len);
-        parts.add(newPart);
+        synchronized (this) {
+            partIndex = partIndex.append(newPart);
+        }
 
         logger.log(Level.TRACE, "leave: {}, {}, {}", newFile, off, len);
     }
 
+    /**
+     * Returns the current snapshot of the parts of this stream. Parts added
+     * later are not reflected in the returned snapshot.
+     */
+    protected PartIndex getPartIndex() {
+        return partIndex;
+    }
+
+    /**
+     * Enables or disables parallel I/O across parts. When an executor is set,
+     * a single read (or write, for ConcatenatedStream) that spans more than one
+     * part issues the per-part operations concurrently on the executor, into
+     * disjoint slices of the caller's buffer. This pays off when the parts live
+     * on different devices. Operations within a single part are unaffected.
+     *
+     * @param executor the executor to run per-part operations on, or
+     *                 <code>null</code> to do them sequentially in the calling
+     *                 thread (the default).
+     */
+    public void setParallelExecutor(Executor executor) {
+        this.parallelExecutor = executor;
+    }
+
+    /**
+     * Returns the executor used for parallel I/O across parts, or
+     * <code>null</code> if parallel I/O is disabled.
+     */
+    public Executor getParallelExecutor() {
+        return parallelExecutor;
+    }
+
+    /**
+     * Splits the region [<code>pos</code>, <code>pos + len</code>) into one
+     * segment per non-empty part that it covers. The region is truncated at
+     * the end of the stream.
+     */
+    protected List<Segment> getSegments(PartIndex parts, long pos, int len) {
+        List<Segment> segments = new ArrayList<>();
+        int partNumber = parts.find(pos);
+        int dataOffset = 0;
+        while (dataOffset < len && partNumber < parts.size()) {
+            Part part = parts.get(partNumber);
+            long posInPart = pos + dataOffset - parts.getPartStart(partNumber);
+            int segmentLength = (int) Math.min(len - dataOffset, part.length - posInPart);
+            if (segmentLength > 0) {
+                segments.add(new Segment(part, posInPart, dataOffset, segmentLength));
+                dataOffset += segmentLength;
+            }
+            ++partNumber;
+        }
+
+        return segments;
+    }
+
+    /**
+     * Applies <code>operation</code> to all <code>segments</code>, the first
+     * one in the calling thread and the others on <code>executor</code>, and
+     * waits for all of them to complete. The first exception thrown by any
+     * operation is rethrown.
+     */
+    protected static <S> void runParallel(Executor executor, List<S> segments, SegmentOperation<S> operation) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(segments.size());
+        for (int i = 1; i < segments.size(); ++i) {
+            int segmentIndex = i;
+            futures.add(CompletableFuture.runAsync(
+                    () -> operation.apply(segmentIndex, segments.get(segmentIndex)), executor));
+        }
+
+        RuntimeException failure = null;
+        try {
+            operation.apply(0, segments.get(0));
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException ?
+                            (RuntimeException) e.getCause() : e;
+                }
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
     @Override
     public void seek(long pos) {
         logger.log(Level.TRACE, "enter: {}", pos);
 
+        StreamSeekEvent event = new StreamSeekEvent();
+        event.begin();
         virtualFP = pos;
+        event.commit(this, pos);
 
         logger.log(Level.TRACE, "leave: {}", pos);
     }
 
     @Override
     public int read(byte[] data, int off, int len) {
-//        String METHOD_NAME = "read";
         logger.log(Level.TRACE, "enter: {}, {}, {}", data, off, len);
 
         logger.log(Level.DEBUG, "virtualFP=" + virtualFP);
 
         try {
-            int bytesRead = 0;
+            int res = readAt(virtualFP, data, off, len);
+            if (res > 0)
+                virtualFP += res;
 
-            long bytesToSkip = virtualFP;
-            int requestedPartIndex = 0;
-            for (Part p : parts) {
-                if (bytesToSkip < p.length) {
-                    // The first byte of virtualFP is within this part.
-                    break;
-                }
+            logger.log(Level.TRACE, "return: {}", res);
+            return res;
+        } finally {
+            logger.log(Level.TRACE, "leave: {}, {}, {}", data, off, len);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Parts that are {@link PositionalReadable} are read without touching their
+     * file pointers. Other parts are seeked and read while holding their
+     * monitor, see {@link IOUtil#readAt(ReadableRandomAccessStream, long, byte[], int, int)}.
+     * If a parallel executor has been set and the read spans more than one
+     * part, the parts are read concurrently.
+     */
+    @Override
+    public int readAt(long pos, byte[] data, int off, int len) {
+        logger.log(Level.TRACE, "enter: {}, {}, {}, {}", pos, data, off, len);
+
+        try {
+            if (len == 0)
+                return 0;
 
-                ++requestedPartIndex;
-                bytesToSkip -= p.length;
+            StreamReadEvent event = new StreamReadEvent();
+            event.begin();
+
+            PartIndex parts = partIndex;
+            Executor executor = parallelExecutor;
+
+            // Segments are only built when the read actually fans out.
+            int bytesRead;
+            if (executor != null && parts.countFileParts(pos, len, 2) > 1)
+                bytesRead = readParallel(executor, parts, pos, data, off, len);
+            else
+                bytesRead = readSequential(parts, pos, data, off, len);
+
+            int res = bytesRead > 0 ? bytesRead : -1;
+            event.commit(this, pos, len, res);
+
+            logger.log(Level.TRACE, "return: {}", res);
+            return res;
+        } finally {
+            logger.log(Level.TRACE, "leave: {}, {}, {}, {}", pos, data, off, len);
+        }
+    }
+
+    /** Reads the parts covered by the region one after the other, without allocating. */
+    private int readSequential(PartIndex parts, long pos, byte[] data, int off, int len) {
+        int partNumber = parts.find(pos);
+        long partStart = partNumber < parts.size() ? parts.getPartStart(partNumber) : 0;
+
+        int bytesRead = 0;
+        while (bytesRead < len && partNumber < parts.size()) {
+            Part part = parts.get(partNumber);
+            long posInPart = pos + bytesRead - partStart;
+            int bytesToRead = (int) Math.min(len - bytesRead, part.length - posInPart);
+            if (bytesToRead == 0) {
+                // Empty part.
+                ++partNumber;
+                continue;
             }
 
-            if (requestedPartIndex >= parts.size()) {
-                return -1;
+            logger.log(Level.DEBUG, "partNumber = " + partNumber);
+            logger.log(Level.DEBUG, "posInPart = " + posInPart);
+            logger.log(Level.DEBUG, "bytesToRead = " + bytesToRead);
+
+            int res;
+            if (part.file == null) {
+                // This is a hole, so just zero-fill.
+                Arrays.fill(data, off + bytesRead, off + bytesRead + bytesToRead, (byte) 0);
+                res = bytesToRead;
+            } else {
+                res = IOUtil.readAt(part.file, part.startOffset + posInPart, data, off + bytesRead, bytesToRead);
             }
 
-            while (requestedPartIndex < parts.size()) {
-                Part requestedPart = parts.get(requestedPartIndex++);
+            logger.log(Level.DEBUG, "res = " + res);
+
+            if (res <= 0)
+                break;
 
-                logger.log(Level.DEBUG, "requestedPartIndex = " + requestedPartIndex);
-                logger.log(Level.DEBUG, "requestedPart.length = " + requestedPart.length);
-                logger.log(Level.DEBUG, "requestedPart.startOffset = " + requestedPart.startOffset);
+            bytesRead += res;
+            if (res == bytesToRead) {
+                partStart += part.length;
+                ++partNumber;
+            }
+        }
 
-                long bytesToSkipInPart = bytesToSkip;
+        return bytesRead;
+    }
 
-                logger.log(Level.DEBUG, "bytesToSkipInPart = " + bytesToSkipInPart);
+    /** Reads the parts covered by the region concurrently on <code>executor</code>. */
+    private int readParallel(Executor executor, PartIndex parts, long pos, byte[] data, int off, int len) {
+        List<Segment> segments = getSegments(parts, pos, len);
+        int[] results = new int[segments.size()];
+        runParallel(executor, segments, (i, segment) ->
+                results[i] = readSegment(segment, data, off + segment.dataOffset));
+
+        int bytesRead = 0;
+        for (int i = 0; i < results.length; ++i) {
+            bytesRead += results[i];
+            if (results[i] < segments.get(i).length)
+                break;
+        }
+        return bytesRead;
+    }
 
-                bytesToSkip = 0;
+    /**
+     * Reads <code>segment</code> into <code>data</code> at <code>off</code>,
+     * stopping early only at end of the part's file.
+     *
+     * @return the number of bytes read.
+     */
+    private int readSegment(Segment segment, byte[] data, int off) {
+        logger.log(Level.DEBUG, "reading segment: posInPart=" + segment.posInPart +
+                " length=" + segment.length);
+
+        if (segment.part.file == null) {
+            // This is a hole, so just zero-fill.
+            Arrays.fill(data, off, off + segment.length, (byte) 0);
+            return segment.length;
+        }
 
-                int bytesLeftToRead = len - bytesRead;
+        long filePos = segment.part.startOffset + segment.posInPart;
+        int bytesRead = 0;
+        while (bytesRead < segment.length) {
+            int res = IOUtil.readAt(segment.part.file, filePos + bytesRead, data, off + bytesRead,
+                    segment.length - bytesRead);
+            if (res <= 0)
+                break;
+            bytesRead += res;
+        }
 
-                logger.log(Level.DEBUG, "bytesLeftToRead = " + bytesLeftToRead);
+        return bytesRead;
+    }
 
-                int bytesToRead = (int) (bytesLeftToRead < requestedPart.length
-                        ? bytesLeftToRead : requestedPart.length);
+    /** Zero-fills all remaining bytes of <code>slice</code>, for holes. */
+    private static void fillHole(ByteBuffer slice) {
+        if (slice.hasArray()) {
+            Arrays.fill(slice.array(), slice.arrayOffset() + slice.position(),
+                    slice.arrayOffset() + slice.limit(), (byte) 0);
+        } else {
+            while (slice.hasRemaining())
+                slice.put(ZEROS, 0, Math.min(ZEROS.length, slice.remaining()));
+        }
+    }
 
-                logger.log(Level.DEBUG, "bytesToRead = " + bytesToRead);
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The parts covered by the read are read concurrently with
+     * {@link IOUtil#readAsync(ReadableRandomAccessStream, long, ByteBuffer, Executor)},
+     * so parts that are {@link AsyncReadableRandomAccess} don't block any
+     * thread. Other parts block a thread of the
+     * {@linkplain #setParallelExecutor(Executor) parallel executor}, or of a
+     * shared bounded pool if none is set, for the duration of their read.
+     * Holes are zero-filled immediately.
+     */
+    @Override
+    public CompletableFuture<Integer> readAsync(long pos, ByteBuffer dst) {
+        if (!dst.hasRemaining())
+            return CompletableFuture.completedFuture(0);
+
+        Executor executor = parallelExecutor;
+        List<Segment> segments = getSegments(partIndex, pos, dst.remaining());
+        int off = dst.position();
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            ByteBuffer slice = dst.slice(off + segment.dataOffset, segment.length);
+            if (segment.part.file == null) {
+                fillHole(slice);
+                futures.add(CompletableFuture.completedFuture(segment.length));
+            } else {
+                long partPos = segment.part.startOffset + segment.posInPart;
+                futures.add(IOUtil.readAsync(segment.part.file, partPos, slice, executor)
+                        .thenApply(res -> Math.max(res, 0)));
+            }
+        }
 
-                int res;
-                if (requestedPart.file == null) {
-                    // This is a hole, so just zero-fill.
-                    Arrays.fill(data, off + bytesRead, bytesToRead, (byte) 0);
-                    res = bytesToRead;
-                } else {
-                    logger.log(Level.DEBUG, "seeking to " + bytesToSkipInPart);
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            int bytesRead = 0;
+            for (int i = 0; i < futures.size(); ++i) {
+                int res = futures.get(i).join();
+                bytesRead += res;
+                if (res < segments.get(i).length)
+                    break;
+            }
 
-                    requestedPart.file.seek(requestedPart.startOffset + bytesToSkipInPart);
+            dst.position(off + bytesRead);
+            return bytesRead > 0 ? bytesRead : -1;
+        });
+    }
 
-                    logger.log(Level.DEBUG, "invoking requestedPart.file.read(byte[" +
-                            data.length + "], " + (off + bytesRead) + ", " + bytesToRead + ")");
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The transfer is forwarded to the parts with translated offsets, so parts
+     * that are {@link TransferableReadable} transfer their data directly. Holes
+     * are written to <code>target</code> as zeroes.
+     */
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) {
+        logger.log(Level.TRACE, "enter: {}, {}, {}", position, count, target);
 
-                    res = requestedPart.file.read(data, off + bytesRead, bytesToRead);
-                }
+        try {
+            PartIndex parts = partIndex;
+            long transferred = 0;
+            while (transferred < count) {
+                int chunkLength = (int) Math.min(count - transferred, Integer.MAX_VALUE);
+                List<Segment> segments = getSegments(parts, position + transferred, chunkLength);
+                if (segments.isEmpty())
+                    break;
 
-                logger.log(Level.DEBUG, "res = " + res);
-
-                if (res > 0) {
-                    virtualFP += res;
-                    bytesRead += res;
-                    if (bytesRead == len) {
-                        logger.log(Level.DEBUG, "returning " + bytesRead);
-
-                        return bytesRead;
-                    } else if (bytesRead > len)
-                        throw new RuntimeException("Read more than I was supposed to! This should not be possible.");
-                } else {
-                    if (bytesRead > 0)
-                        return bytesRead;
-                    else
-                        return -1;
+                for (Segment segment : segments) {
+                    long res = transferSegment(segment, target);
+                    transferred += res;
+                    if (res < segment.length)
+                        return transferred;
                 }
             }
 
-            logger.log(Level.TRACE, "return: {}", bytesRead);
-            return bytesRead;
+            logger.log(Level.TRACE, "return: {}", transferred);
+            return transferred;
         } finally {
-            logger.log(Level.TRACE, "leave: {}, {}, {}", data, off, len);
+            logger.log(Level.TRACE, "leave: {}, {}, {}", position, count, target);
+        }
+    }
+
+    /**
+     * Transfers <code>segment</code> to <code>target</code>.
+     *
+     * @return the number of bytes transferred.
+     */
+    private long transferSegment(Segment segment, WritableByteChannel target) {
+        logger.log(Level.DEBUG, "transferring segment: posInPart=" + segment.posInPart +
+                " length=" + segment.length);
+
+        if (segment.part.file != null) {
+            return IOUtil.transferTo(segment.part.file, segment.part.startOffset + segment.posInPart,
+                    segment.length, target);
+        }
+
+        // This is a hole, so write zeroes.
+        try {
+            long transferred = 0;
+            while (transferred < segment.length) {
+                ByteBuffer zeros = ByteBuffer.wrap(ZEROS, 0, (int) Math.min(ZEROS.length, segment.length - transferred));
+                int res = target.write(zeros);
+                if (res == 0)
+                    break;
+                transferred += res;
+            }
+            return transferred;
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
         }
     }
 
@@ -209,12 +629,9 @@ public abstract class BasicConcatenatedStream<A extends ReadableRandomAccessStre
 //        String METHOD_NAME = "length";
         logger.log(Level.TRACE, "enter");
 
-        long result = 0;
-        for (BasicConcatenatedStream<?>.Part p : parts)
-            result += p.length;
+        long result = partIndex.length();
 
-        logger.log(Level.DEBUG, "returning " + result);
-        logger.log(Level.TRACE, "return: {}", virtualFP);
+        logger.log(Level.TRACE, "return: {}", result);
         logger.log(Level.TRACE, "leave");
 
         return result;
@@ -235,7 +652,9 @@ public abstract class BasicConcatenatedStream<A extends ReadableRandomAccessStre
     public void close() {
         logger.log(Level.TRACE, "enter");
 
-        for (Part p : parts) {
+        PartIndex parts = partIndex;
+        for (int i = 0; i < parts.size(); ++i) {
+            Part p = parts.get(i);
             if (p.file != null) {
                 p.file.close();
             }
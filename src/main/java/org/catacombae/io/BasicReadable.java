@@ -18,6 +18,11 @@
 
 package org.catacombae.io;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+
 /**
  * Basic implementation of core features of Readable, to allow the subclasser to only implement the
  * essential methods.
@@ -74,4 +79,63 @@ public abstract class BasicReadable implements Readable {
                 throw new RuntimeIOException("Couldn't read the entire length.");
         }
     }
+
+    /** Largest temporary array used when bridging to a buffer without an accessible array. */
+    private static final int BRIDGE_BUFFER_SIZE = 64 * 1024;
+
+    static int defaultRead(Readable r, ByteBuffer dst) throws RuntimeIOException {
+        if (!dst.hasRemaining())
+            return 0;
+
+        if (dst.hasArray()) {
+            int res = r.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            if (res > 0)
+                dst.position(dst.position() + res);
+            return res;
+        }
+
+        byte[] tmp = new byte[Math.min(dst.remaining(), BRIDGE_BUFFER_SIZE)];
+        int res = r.read(tmp, 0, tmp.length);
+        if (res > 0)
+            dst.put(tmp, 0, res);
+        return res;
+    }
+
+    static int defaultReadAt(PositionalReadable r, long pos, ByteBuffer dst) throws RuntimeIOException {
+        if (!dst.hasRemaining())
+            return 0;
+
+        if (dst.hasArray()) {
+            int res = r.readAt(pos, dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            if (res > 0)
+                dst.position(dst.position() + res);
+            return res;
+        }
+
+        byte[] tmp = new byte[Math.min(dst.remaining(), BRIDGE_BUFFER_SIZE)];
+        int res = r.readAt(pos, tmp, 0, tmp.length);
+        if (res > 0)
+            dst.put(tmp, 0, res);
+        return res;
+    }
+
+    static long defaultTransferTo(PositionalReadable r, long position, long count, WritableByteChannel target)
+            throws RuntimeIOException {
+        try {
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(count, BRIDGE_BUFFER_SIZE));
+            long transferred = 0;
+            while (transferred < count) {
+                buf.clear().limit((int) Math.min(buf.capacity(), count - transferred));
+                if (r.readAt(position + transferred, buf) <= 0)
+                    break;
+
+                buf.flip();
+                while (buf.hasRemaining())
+                    transferred += target.write(buf);
+            }
+            return transferred;
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        }
+    }
 }
@@ -18,6 +18,9 @@
 
 package org.catacombae.io;
 
+import java.nio.ByteBuffer;
+
+
 /**
  * Basic implementation of core features of Writable, to allow the subclasser to only implement the
  * essential methods.
@@ -49,4 +52,19 @@ public abstract class BasicWritable implements Writable {
     static void defaultWrite(Writable w, int b) throws RuntimeIOException {
         w.write(new byte[] {(byte) (b & 0xFF)}, 0, 1);
     }
+
+    static void defaultWrite(Writable w, ByteBuffer src) throws RuntimeIOException {
+        if (src.hasArray()) {
+            w.write(src.array(), src.arrayOffset() + src.position(), src.remaining());
+            src.position(src.limit());
+            return;
+        }
+
+        byte[] tmp = new byte[Math.min(src.remaining(), 64 * 1024)];
+        while (src.hasRemaining()) {
+            int len = Math.min(src.remaining(), tmp.length);
+            src.get(tmp, 0, len);
+            w.write(tmp, 0, len);
+        }
+    }
 }
@@ -0,0 +1,488 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.catacombae.io.jfr.CacheMissEvent;
+import org.catacombae.util.IOUtil;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * A ReadableRandomAccessStream that keeps recently read parts of an
+ * underlying stream in memory.
+ * <p>
+ * The source is divided into aligned blocks of <code>blockSize</code> bytes.
+ * Every read is served from whole blocks, which are kept in a LRU cache
+ * bounded by <code>maxCacheSize</code> bytes. All methods except the file
+ * pointer based ones are thread-safe, and the stream is
+ * {@link PositionalReadable}. To share one cache between many
+ * {@link ReadableRandomAccessSubstream}s, wrap the caching stream in a
+ * {@link SynchronizedReadableRandomAccessStream}:
+ * <pre>
+ * SynchronizedReadableRandomAccessStream shared =
+ *         new SynchronizedReadableRandomAccessStream(
+ *                 new CachingReadableRandomAccessStream(new ReadableFileStream(file)));
+ * </pre>
+ * The stream follows {@link AccessHint}s: while the stream is advised to be
+ * read {@link AccessHint#SEQUENTIAL sequentially}, blocks that weren't cached
+ * already are not admitted to the cache (only the most recent one is kept), so
+ * streaming through a large file doesn't evict the blocks that are read over
+ * and over. {@link AccessHint#WILLNEED} reads the range into the cache right
+ * away and {@link AccessHint#DONTNEED} drops it.
+ * <p>
+ * The length of the source is sampled when the caching stream is created, and
+ * the source must not be modified by others while it is cached.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public class CachingReadableRandomAccessStream extends BasicReadableRandomAccessStream
+        implements PositionalReadable, VectoredReadable, AdvisableRandomAccess {
+
+    private static final Logger logger = getLogger(CachingReadableRandomAccessStream.class.getName());
+
+    /** Default size of a cache block (64 KiB). */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /** Default maximum amount of cached data (64 MiB). */
+    public static final long DEFAULT_MAX_CACHE_SIZE = 64L * 1024 * 1024;
+
+    /** Largest single read issued for a run of missing blocks in a batch. */
+    private static final int MAX_RUN_SIZE = 1024 * 1024;
+
+    private final ReadableRandomAccessStream source;
+    private final int blockSize;
+    private final long maxCacheSize;
+    private final long length;
+
+    /** Block index to block data, in access order. Guarded by itself. */
+    private final LinkedHashMap<Long, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    /** Sum of the lengths of all cached blocks. Guarded by cache. */
+    private long cachedBytes = 0;
+    /** The last block read while streaming, which isn't admitted to the cache. Guarded by cache. */
+    private long streamBlockIndex = -1;
+    /** Guarded by cache. */
+    private byte[] streamBlock = null;
+
+    /** Whether the stream is advised to be read sequentially. */
+    private volatile boolean streaming = false;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private long filePointer = 0;
+    private boolean closed = false;
+
+    public CachingReadableRandomAccessStream(ReadableRandomAccessStream source) {
+        this(source, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new caching stream on top of <code>source</code>.
+     *
+     * @param source       the stream to cache.
+     * @param blockSize    the size of each cache block in bytes.
+     * @param maxCacheSize the maximum number of bytes to keep cached.
+     */
+    public CachingReadableRandomAccessStream(ReadableRandomAccessStream source, int blockSize, long maxCacheSize) {
+        if (source == null)
+            throw new IllegalArgumentException("source may NOT be null");
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+        if (maxCacheSize < blockSize)
+            throw new IllegalArgumentException("maxCacheSize must hold at least one block: " + maxCacheSize);
+
+        this.source = source;
+        this.blockSize = blockSize;
+        this.maxCacheSize = maxCacheSize;
+        this.length = source.length();
+    }
+
+    /** Returns the stream that is cached by this stream. */
+    public ReadableRandomAccessStream getSourceStream() {
+        return source;
+    }
+
+    /** Returns the size of each cache block in bytes. */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /** Returns the maximum number of bytes that are kept cached. */
+    public long getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    /** Returns the number of bytes currently cached. */
+    public long getCachedBytes() {
+        synchronized (cache) {
+            return cachedBytes;
+        }
+    }
+
+    /** Returns the number of block lookups that were served from the cache. */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /** Returns the number of block lookups that had to read from the source. */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /** Returns the number of blocks that have been evicted from the cache. */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /** Drops all cached blocks. Counters are not reset. */
+    public void invalidate() {
+        synchronized (cache) {
+            cache.clear();
+            cachedBytes = 0;
+            streamBlockIndex = -1;
+            streamBlock = null;
+        }
+    }
+
+    /**
+     * Returns the block with index <code>blockIndex</code>, reading it from
+     * the source if it isn't cached.
+     */
+    private byte[] getBlock(long blockIndex) {
+        synchronized (cache) {
+            byte[] block = lookupBlock(blockIndex);
+            if (block != null) {
+                hits.increment();
+                return block;
+            }
+        }
+
+        misses.increment();
+
+        long blockStart = blockIndex * blockSize;
+        byte[] block = new byte[(int) Math.min(blockSize, length - blockStart)];
+
+        logger.log(Level.DEBUG, "cache miss, reading block " + blockIndex + " (" + block.length + " bytes)");
+
+        CacheMissEvent event = new CacheMissEvent();
+        event.begin();
+        IOUtil.readFullyAt(source, blockStart, block, 0, block.length);
+        event.commit(this, blockStart, block.length);
+        putBlock(blockIndex, block, !streaming);
+
+        return block;
+    }
+
+    /** Returns the block with index <code>blockIndex</code> if it is in memory. Caller must hold the cache lock. */
+    private byte[] lookupBlock(long blockIndex) {
+        byte[] block = cache.get(blockIndex);
+        if (block == null && blockIndex == streamBlockIndex)
+            block = streamBlock;
+        return block;
+    }
+
+    /**
+     * Inserts a block that was read from the source, evicting as needed. If
+     * <code>admit</code> is false the block is only kept until the next block
+     * that isn't admitted replaces it.
+     */
+    private void putBlock(long blockIndex, byte[] block, boolean admit) {
+        synchronized (cache) {
+            if (!admit) {
+                streamBlockIndex = blockIndex;
+                streamBlock = block;
+                return;
+            }
+
+            byte[] previous = cache.put(blockIndex, block);
+            if (previous != null)
+                cachedBytes -= previous.length; // Raced with another reader.
+            cachedBytes += block.length;
+
+            Iterator<Map.Entry<Long, byte[]>> it = cache.entrySet().iterator();
+            while (cachedBytes > maxCacheSize && it.hasNext()) {
+                Map.Entry<Long, byte[]> eldest = it.next();
+                if (eldest.getKey() == blockIndex)
+                    continue;
+                cachedBytes -= eldest.getValue().length;
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Reads <code>count</code> consecutive blocks starting at
+     * <code>firstBlock</code> from the source with a single read, caches them
+     * and adds them to <code>blocks</code>.
+     */
+    private void fetchBlocks(long firstBlock, int count, Map<Long, byte[]> blocks, boolean admit) {
+        misses.add(count);
+
+        long runStart = firstBlock * blockSize;
+        int runLength = (int) Math.min((long) count * blockSize, length - runStart);
+        byte[] run = new byte[runLength];
+
+        logger.log(Level.DEBUG, "cache miss, reading blocks " + firstBlock + "-" + (firstBlock + count - 1) +
+                " (" + runLength + " bytes)");
+
+        CacheMissEvent event = new CacheMissEvent();
+        event.begin();
+        IOUtil.readFullyAt(source, runStart, run, 0, runLength);
+        event.commit(this, runStart, runLength);
+
+        for (int i = 0; i < count; ++i) {
+            int blockOffset = i * blockSize;
+            byte[] block = count == 1 ? run :
+                    Arrays.copyOfRange(run, blockOffset, Math.min(blockOffset + blockSize, runLength));
+            putBlock(firstBlock + i, block, admit);
+            blocks.put(firstBlock + i, block);
+        }
+    }
+
+    @Override
+    public int readAt(long pos, byte[] data, int off, int len) {
+        if (closed)
+            throw new RuntimeIOException("Stream is closed!");
+        if (pos < 0)
+            throw new IllegalArgumentException("pos is negative: " + pos);
+        if (len == 0)
+            return 0;
+        if (pos >= length)
+            return -1;
+
+        int bytesToRead = (int) Math.min(len, length - pos);
+        int bytesRead = 0;
+        while (bytesRead < bytesToRead) {
+            long curPos = pos + bytesRead;
+            byte[] block = getBlock(curPos / blockSize);
+            int posInBlock = (int) (curPos % blockSize);
+            int curLength = Math.min(bytesToRead - bytesRead, block.length - posInBlock);
+
+            System.arraycopy(block, posInBlock, data, off + bytesRead, curLength);
+            bytesRead += curLength;
+        }
+
+        return bytesRead;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All blocks covered by the batch are looked up at once. Runs of
+     * consecutive blocks that aren't cached are read from the source with one
+     * read per run (of at most 1 MiB), after which every request is served from
+     * the blocks.
+     */
+    @Override
+    public void readFullyAt(long[] positions, byte[][] buffers, int[] offsets, int[] lengths) {
+        if (closed)
+            throw new RuntimeIOException("Stream is closed!");
+        if (buffers.length != positions.length || offsets.length != positions.length ||
+                lengths.length != positions.length)
+            throw new IllegalArgumentException("Request arrays differ in length.");
+
+        // Distinct blocks covered by the batch, in order.
+        TreeMap<Long, byte[]> blocks = new TreeMap<>();
+        for (int i = 0; i < positions.length; ++i) {
+            if (positions[i] < 0)
+                throw new IllegalArgumentException("pos is negative: " + positions[i]);
+            if (lengths[i] == 0)
+                continue;
+            if (positions[i] + lengths[i] > length)
+                throw new RuntimeIOException("Couldn't read the entire length.");
+
+            long lastBlock = (positions[i] + lengths[i] - 1) / blockSize;
+            for (long blockIndex = positions[i] / blockSize; blockIndex <= lastBlock; ++blockIndex)
+                blocks.put(blockIndex, null);
+        }
+
+        List<Long> missing = new ArrayList<>();
+        synchronized (cache) {
+            for (Map.Entry<Long, byte[]> entry : blocks.entrySet()) {
+                byte[] block = lookupBlock(entry.getKey());
+                if (block != null) {
+                    hits.increment();
+                    entry.setValue(block);
+                } else {
+                    missing.add(entry.getKey());
+                }
+            }
+        }
+
+        int maxRunBlocks = Math.max(1, MAX_RUN_SIZE / blockSize);
+        int first = 0;
+        while (first < missing.size()) {
+            int end = first + 1;
+            while (end < missing.size() && end - first < maxRunBlocks &&
+                    missing.get(end) == missing.get(end - 1) + 1)
+                ++end;
+            fetchBlocks(missing.get(first), end - first, blocks, !streaming);
+            first = end;
+        }
+
+        for (int i = 0; i < positions.length; ++i) {
+            int bytesRead = 0;
+            while (bytesRead < lengths[i]) {
+                long curPos = positions[i] + bytesRead;
+                byte[] block = blocks.get(curPos / blockSize);
+                int posInBlock = (int) (curPos % blockSize);
+                int curLength = Math.min(lengths[i] - bytesRead, block.length - posInBlock);
+
+                System.arraycopy(block, posInBlock, buffers[i], offsets[i] + bytesRead, curLength);
+                bytesRead += curLength;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * {@link AccessHint#SEQUENTIAL} stops admitting new blocks to the cache
+     * until the stream is advised {@link AccessHint#NORMAL} or
+     * {@link AccessHint#RANDOM}. {@link AccessHint#WILLNEED} reads the blocks
+     * of the range that aren't cached (up to the size of the cache) before
+     * returning, and {@link AccessHint#DONTNEED} drops the blocks that lie
+     * entirely within the range. All other advice is passed on to the source.
+     */
+    @Override
+    public void advise(long pos, long length, AccessHint hint) {
+        if (closed)
+            throw new RuntimeIOException("Stream is closed!");
+        if (pos < 0)
+            throw new IllegalArgumentException("pos is negative: " + pos);
+        if (length < 0)
+            throw new IllegalArgumentException("length is negative: " + length);
+
+        long end = length == 0 ? this.length : Math.min(this.length, pos + length);
+
+        switch (hint) {
+        case NORMAL:
+        case RANDOM:
+            streaming = false;
+            IOUtil.advise(source, pos, length, hint);
+            break;
+        case SEQUENTIAL:
+            streaming = true;
+            IOUtil.advise(source, pos, length, hint);
+            break;
+        case WILLNEED:
+            if (pos < end)
+                prefetch(pos / blockSize, (end - 1) / blockSize);
+            break;
+        case DONTNEED:
+            synchronized (cache) {
+                long firstBlock = (pos + blockSize - 1) / blockSize;
+                // The last block is shorter than blockSize, so it is covered if the range reaches the end.
+                long endBlock = end == this.length ? (end + blockSize - 1) / blockSize : end / blockSize;
+                Iterator<Map.Entry<Long, byte[]>> it = cache.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Long, byte[]> entry = it.next();
+                    if (entry.getKey() >= firstBlock && entry.getKey() < endBlock) {
+                        cachedBytes -= entry.getValue().length;
+                        it.remove();
+                    }
+                }
+                if (streamBlockIndex >= firstBlock && streamBlockIndex < endBlock) {
+                    streamBlockIndex = -1;
+                    streamBlock = null;
+                }
+            }
+            IOUtil.advise(source, pos, length, hint);
+            break;
+        }
+    }
+
+    /** Reads the blocks in [<code>firstBlock</code>, <code>lastBlock</code>] that aren't cached into the cache. */
+    private void prefetch(long firstBlock, long lastBlock) {
+        // Prefetching more than the cache holds would only evict what was just read.
+        lastBlock = Math.min(lastBlock, firstBlock + Math.max(1, maxCacheSize / blockSize) - 1);
+
+        List<Long> missing = new ArrayList<>();
+        synchronized (cache) {
+            for (long blockIndex = firstBlock; blockIndex <= lastBlock; ++blockIndex) {
+                if (!cache.containsKey(blockIndex))
+                    missing.add(blockIndex);
+            }
+        }
+
+        Map<Long, byte[]> blocks = new TreeMap<>();
+        int maxRunBlocks = Math.max(1, MAX_RUN_SIZE / blockSize);
+        int first = 0;
+        while (first < missing.size()) {
+            int end = first + 1;
+            while (end < missing.size() && end - first < maxRunBlocks &&
+                    missing.get(end) == missing.get(end - 1) + 1)
+                ++end;
+            fetchBlocks(missing.get(first), end - first, blocks, true);
+            blocks.clear();
+            first = end;
+        }
+    }
+
+    @Override
+    public int read(byte[] data, int pos, int len) {
+        int res = readAt(filePointer, data, pos, len);
+        if (res > 0)
+            filePointer += res;
+        return res;
+    }
+
+    @Override
+    public void seek(long pos) {
+        if (closed)
+            throw new RuntimeIOException("Stream is closed!");
+
+        filePointer = pos;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long getFilePointer() {
+        return filePointer;
+    }
+
+    /** Drops the cache and closes the underlying stream. */
+    @Override
+    public void close() {
+        if (closed)
+            throw new RuntimeIOException("Stream is closed!");
+
+        closed = true;
+        invalidate();
+        source.close();
+    }
+}
@@ -18,13 +18,21 @@
 
 package org.catacombae.io;
 
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.catacombae.io.jfr.StreamWriteEvent;
+import org.catacombae.util.IOUtil;
+
+
 /**
  * A full read/write version of ReadableConcatenatedStream.
  * Note: Untested!
  *
  * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
  */
-public class ConcatenatedStream extends BasicConcatenatedStream<RandomAccessStream> implements RandomAccessStream {
+public class ConcatenatedStream extends BasicConcatenatedStream<RandomAccessStream> implements RandomAccessStream, TransferableWritable {
 
     public ConcatenatedStream(RandomAccessStream firstPart, long startOffset, long length) {
         super(firstPart, startOffset, length);
@@ -35,53 +43,114 @@ public class ConcatenatedStream extends BasicConcatenatedStream<RandomAccessStre
         BasicWritable.defaultWrite(this, data);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If a parallel executor has been set and the write spans more than one
+     * part, the parts are written concurrently.
+     */
     @Override
     public void write(byte[] data, int off, int len) throws RuntimeIOException {
-        int bytesWritten = 0;
-
-        // First: Look up the position represented by our virtual file pointer.
-        long bytesToSkip = virtualFP;
-        int requestedPartIndex = 0;
-        for (Part p : parts) {
-            if (bytesToSkip < p.length) {
-                // The first byte of virtualFP is within this part.
-                break;
-            }
-
-            ++requestedPartIndex;
-            bytesToSkip -= p.length;
-        }
+        StreamWriteEvent event = new StreamWriteEvent();
+        event.begin();
 
-        if (requestedPartIndex >= parts.size()) {
+        // First: Look up the parts covered by the write, starting at our virtual file pointer.
+        PartIndex parts = getPartIndex();
+        if (len > 0 && virtualFP >= parts.length()) {
             throw new RuntimeIOException("Tried to write beyond end of stream.");
         }
 
-        // Loop as long as we still have data to fill, and we still have parts to process.
-        while (bytesWritten < len && requestedPartIndex < parts.size()) {
-            Part requestedPart = parts.get(requestedPartIndex++);
-            long bytesToSkipInPart = bytesToSkip;
-            bytesToSkip = 0;
+        checkWritable(parts, virtualFP, len);
+
+        Executor executor = getParallelExecutor();
+        if (executor != null && parts.countFileParts(virtualFP, len, 2) > 1) {
+            List<Segment> segments = getSegments(parts, virtualFP, len);
+            runParallel(executor, segments, (i, segment) ->
+                    writePart(segment.part, segment.posInPart, data, off + segment.dataOffset, segment.length));
+        } else {
+            // Sequential writes don't allocate.
+            int partNumber = parts.find(virtualFP);
+            int written = 0;
+            while (written < len) {
+                Part part = parts.get(partNumber);
+                long posInPart = virtualFP + written - parts.getPartStart(partNumber);
+                int bytesToWrite = (int) Math.min(len - written, part.length - posInPart);
+                if (bytesToWrite > 0) {
+                    writePart(part, posInPart, data, off + written, bytesToWrite);
+                    written += bytesToWrite;
+                }
+                ++partNumber;
+            }
+        }
 
-            int bytesLeftToWrite = len - bytesWritten;
-            int bytesToWrite = (int) ((bytesLeftToWrite < requestedPart.length) ? bytesLeftToWrite : requestedPart.length);
+        event.commit(this, virtualFP, len);
+        virtualFP += len;
+    }
 
-            if (requestedPart.file == null) {
-                throw new RuntimeException("Tried to write to hole at offset: " + requestedPart.startOffset);
+    /**
+     * Checks, before any I/O is issued, that the region is entirely covered by
+     * parts that aren't holes.
+     */
+    private void checkWritable(PartIndex parts, long pos, int len) {
+        long end = pos + len;
+        for (int i = parts.find(pos); i < parts.size() && parts.getPartStart(i) < end; ++i) {
+            Part part = parts.get(i);
+            if (part.file == null && part.length > 0) {
+                throw new RuntimeException("Tried to write to hole at offset: " + part.startOffset);
             }
+        }
 
-            requestedPart.file.seek(bytesToSkipInPart);
-            requestedPart.file.write(data, off + bytesWritten, bytesToWrite);
+        long available = Math.min(len, parts.length() - pos);
+        if (available < len)
+            throw new RuntimeIOException("Could not write all data requested (available: " +
+                    available + " requested:" + len + ").");
+    }
+
+    private void writePart(Part part, long posInPart, byte[] data, int off, int len) {
+        RandomAccessStream file = part.file;
+
+        // Parts are shared with positional reads, see IOUtil.readAt.
+        synchronized (file) {
+            file.seek(part.startOffset + posInPart);
+            file.write(data, off, len);
+        }
+    }
 
-            bytesWritten += bytesToWrite;
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The transfer is forwarded to the parts with translated offsets. Like
+     * {@link #write(byte[], int, int)}, the whole range must be covered by
+     * parts that aren't holes.
+     */
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) throws RuntimeIOException {
+        PartIndex parts = getPartIndex();
+        if (count > 0 && position + count > parts.length()) {
+            throw new RuntimeIOException("Tried to transfer beyond end of stream (length: " + parts.length() +
+                    " requested end: " + (position + count) + ").");
         }
 
-        if (bytesWritten < len)
-            throw new RuntimeIOException("Could not write all data requested (wrote: " +
-                    bytesWritten + " requested:" + len + ".");
+        long transferred = 0;
+        while (transferred < count) {
+            int chunkLength = (int) Math.min(count - transferred, Integer.MAX_VALUE);
+            List<Segment> segments = getSegments(parts, position + transferred, chunkLength);
+            for (Segment segment : segments) {
+                if (segment.part.file == null) {
+                    throw new RuntimeException("Tried to write to hole at offset: " + segment.part.startOffset);
+                }
+            }
+
+            for (Segment segment : segments) {
+                long res = IOUtil.transferFrom(segment.part.file, src, segment.part.startOffset + segment.posInPart,
+                        segment.length);
+                transferred += res;
+                if (res < segment.length)
+                    return transferred;
+            }
+        }
 
-        if (bytesWritten > len) // Debug check.
-            throw new RuntimeException("Wrote more than I was supposed to (" + bytesWritten +
-                    " / " + len + " bytes)! This can't happen.");
+        return transferred;
     }
 
     @Override
@@ -0,0 +1,349 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.StampedLock;
+
+import org.catacombae.util.IOUtil;
+import org.catacombae.util.Util;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * A drop-in alternative to {@link SynchronizedReadableRandomAccessStream}
+ * that uses a StampedLock instead of its object monitor.
+ * <p>
+ * Positional reads (<code>readFrom</code>, <code>readAt</code>, vectored,
+ * transfer and asynchronous reads) only take the read lock when the
+ * underlying stream is {@link PositionalReadable}, so any number of them can
+ * run at the same time. The read lock still keeps the underlying stream from
+ * being closed while they are in flight. Operations on the shared file
+ * pointer, positional reads from a source that must be seeked, and closing
+ * the underlying stream take the write lock.
+ * <p>
+ * Unlike a monitor, a StampedLock parks waiting threads instead of pinning
+ * them, so virtual threads blocked on this stream, or on I/O while holding
+ * its lock, release their carrier thread. The lock is not reentrant.
+ * <p>
+ * The reference counting contract is the same as for
+ * SynchronizedReadableRandomAccessStream: every substream adds a reference
+ * and the underlying stream is closed when the last reference is removed.
+ * References are counted without locking, and leaks are reported the same way,
+ * controlled by the <code>references_debug</code> and
+ * <code>references_sample_rate</code> properties of this class.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public class ConcurrentReadableRandomAccessStream
+        extends BasicSynchronizedReadableRandomAccessStream
+        implements SynchronizedReadableRandomAccess, PositionalReadable, TransferableReadable,
+        VectoredReadable, AsyncReadableRandomAccess, AdvisableRandomAccess {
+
+    private static final Logger logger = getLogger(ConcurrentReadableRandomAccessStream.class.getName());
+
+    private static final boolean REFERENCES_DEBUG =
+            Util.booleanEnabledByProperties(logger.isLoggable(Level.DEBUG),
+                    "org.catacombae.io." +
+                            ConcurrentReadableRandomAccessStream.class.getSimpleName() +
+                            ".references_debug");
+
+    /**
+     * Capture the stack of 1 in this many references, so that leaked
+     * references can be traced. 0 disables capturing.
+     */
+    private static final int REFERENCES_SAMPLE_RATE =
+            Integer.getInteger("org.catacombae.io." +
+                    ConcurrentReadableRandomAccessStream.class.getSimpleName() +
+                    ".references_sample_rate", 0);
+
+    /** The underlying stream. */
+    private final ReadableRandomAccessStream ras;
+    private final boolean positional;
+    private final StampedLock lock = new StampedLock();
+    private final ReferenceCounter referenceCounter;
+
+    public ConcurrentReadableRandomAccessStream(ReadableRandomAccessStream sourceStream) {
+        this.ras = sourceStream;
+        this.positional = sourceStream instanceof PositionalReadable;
+        this.referenceCounter = new ReferenceCounter(this, REFERENCES_DEBUG, REFERENCES_SAMPLE_RATE);
+    }
+
+    /**
+     * Returns the backing stream for this
+     * ConcurrentReadableRandomAccessStream.
+     *
+     * @return the backing stream for this
+     * ConcurrentReadableRandomAccessStream.
+     */
+    public ReadableRandomAccessStream getSourceStream() {
+        return ras;
+    }
+
+    @Override
+    public int readFrom(long pos, byte[] b, int off, int len) throws RuntimeIOException {
+        if (positional) {
+            long stamp = lock.readLock();
+            try {
+                return ((PositionalReadable) ras).readAt(pos, b, off, len);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            long oldFP = ras.getFilePointer();
+            if (oldFP != pos) {
+                ras.seek(pos);
+            }
+
+            try {
+                return ras.read(b, off, len);
+            } finally {
+                ras.seek(oldFP);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int readAt(long pos, byte[] b, int off, int len) throws RuntimeIOException {
+        return readFrom(pos, b, off, len);
+    }
+
+    @Override
+    public int readAt(long pos, ByteBuffer dst) throws RuntimeIOException {
+        if (positional) {
+            long stamp = lock.readLock();
+            try {
+                return ((PositionalReadable) ras).readAt(pos, dst);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            long oldFP = ras.getFilePointer();
+            if (oldFP != pos) {
+                ras.seek(pos);
+            }
+
+            try {
+                return ras.read(dst);
+            } finally {
+                ras.seek(oldFP);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void readFullyAt(long[] positions, byte[][] buffers, int[] offsets, int[] lengths)
+            throws RuntimeIOException {
+        long stamp = positional || ras instanceof VectoredReadable ? lock.readLock() : lock.writeLock();
+        try {
+            IOUtil.readFullyAt(ras, positions, buffers, offsets, lengths);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws RuntimeIOException {
+        long stamp = positional || ras instanceof TransferableReadable ? lock.readLock() : lock.writeLock();
+        try {
+            return IOUtil.transferTo(ras, position, count, target);
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the underlying stream is {@link AsyncReadableRandomAccess} the read
+     * lock is held until the read completes, without blocking any thread in
+     * the meantime. Otherwise the read is performed with
+     * {@link #readAt(long, ByteBuffer)} with
+     * {@link IOUtil#readAtAsync(PositionalReadable, long, ByteBuffer, java.util.concurrent.Executor)},
+     * blocking one of its shared threads until the read has finished.
+     */
+    @Override
+    public CompletableFuture<Integer> readAsync(long pos, ByteBuffer dst) {
+        if (!(ras instanceof AsyncReadableRandomAccess)) {
+            return IOUtil.readAtAsync(this, pos, dst, null);
+        }
+
+        long stamp = lock.readLock();
+        CompletableFuture<Integer> future;
+        try {
+            future = ((AsyncReadableRandomAccess) ras).readAsync(pos, dst);
+        } catch (RuntimeException ex) {
+            lock.unlockRead(stamp);
+            throw ex;
+        }
+
+        // StampedLock isn't owned by a thread, so it may be released by the thread completing the read.
+        return future.whenComplete((res, ex) -> lock.unlockRead(stamp));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The advice is forwarded to the underlying stream under the read lock.
+     */
+    @Override
+    public void advise(long pos, long length, AccessHint hint) throws RuntimeIOException {
+        long stamp = lock.readLock();
+        try {
+            IOUtil.advise(ras, pos, length, hint);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long skipFrom(long pos, long length) throws RuntimeIOException {
+        long streamLength = length();
+        long newPos = pos + length;
+
+        if (newPos > streamLength) {
+            return streamLength - pos;
+        } else {
+            return length;
+        }
+    }
+
+    @Override
+    public long remainingLength() throws RuntimeIOException {
+        long stamp = lock.writeLock();
+        try {
+            return ras.length() - ras.getFilePointer();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void close() throws RuntimeIOException {
+        logger.log(Level.DEBUG, ConcurrentReadableRandomAccessStream.class.getName() +
+                "@" + Util.toHexStringBE(hashCode()) + ".close(): Called " +
+                "from " + new Exception().getStackTrace()[1] + ".");
+
+        if (referenceCounter.close(this)) {
+            closeSource();
+        }
+    }
+
+    /** Closes the underlying stream once the reads in flight have finished. */
+    private void closeSource() {
+        long stamp = lock.writeLock();
+        try {
+            ras.close();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long getFilePointer() throws RuntimeIOException {
+        long stamp = lock.writeLock();
+        try {
+            return ras.getFilePointer();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long length() throws RuntimeIOException {
+        long stamp = lock.readLock();
+        try {
+            return ras.length();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int read() throws RuntimeIOException {
+        long stamp = lock.writeLock();
+        try {
+            return ras.read();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int read(byte[] b) throws RuntimeIOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws RuntimeIOException {
+        long stamp = lock.writeLock();
+        try {
+            return ras.read(b, off, len);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws RuntimeIOException {
+        long stamp = lock.writeLock();
+        try {
+            return ras.read(dst);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void seek(long pos) throws RuntimeIOException {
+        long stamp = lock.writeLock();
+        try {
+            ras.seek(pos);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void addReference(Object referrer) {
+        referenceCounter.add(referrer);
+    }
+
+    @Override
+    public void removeReference(Object referrer) {
+        if (referenceCounter.remove(referrer)) {
+            closeSource();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.catacombae.util.IOUtil;
+
+
+/**
+ * This class wraps a java.nio.channels.FileChannel (opened in read/write mode)
+ * and maps its operations to the operations of TruncatableRandomAccessStream.
+ * Writes are positional just like the reads in
+ * {@link ReadableFileChannelStream}.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public class FileChannelStream extends ReadableFileChannelStream implements TruncatableRandomAccessStream, TransferableWritable {
+
+    public FileChannelStream(String filename) {
+        this(new File(filename));
+    }
+
+    public FileChannelStream(File file) {
+        super(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    }
+
+    @Override
+    public void write(byte[] b) {
+        BasicWritable.defaultWrite(this, b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+            while (buf.hasRemaining())
+                channel.write(buf, filePointer + buf.position() - off);
+            filePointer += len;
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer src) {
+        try {
+            while (src.hasRemaining())
+                filePointer += channel.write(src, filePointer);
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        }
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) {
+        return IOUtil.transferFrom(channel, src, position, count);
+    }
+
+    @Override
+    public void write(int b) {
+        BasicWritable.defaultWrite(this, b);
+    }
+
+    /**
+     * Sets the length of the file. Mimics RandomAccessFile.setLength(long),
+     * i.e. the file is zero-extended if it grows, and the file pointer is
+     * moved to the new end of file if it was beyond it.
+     */
+    @Override
+    public void setLength(long newLength) throws RuntimeIOException {
+        try {
+            long oldLength = channel.size();
+            if (newLength < oldLength)
+                channel.truncate(newLength);
+            else if (newLength > oldLength)
+                channel.write(ByteBuffer.wrap(new byte[1]), newLength - 1);
+
+            if (filePointer > newLength)
+                filePointer = newLength;
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        }
+    }
+}
@@ -20,6 +20,11 @@ package org.catacombae.io;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import org.catacombae.io.jfr.StreamWriteEvent;
+import org.catacombae.util.IOUtil;
 
 
 /**
@@ -28,7 +33,7 @@ import java.io.IOException;
  *
  * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
  */
-public class FileStream extends ReadableFileStream implements TruncatableRandomAccessStream {
+public class FileStream extends ReadableFileStream implements TruncatableRandomAccessStream, TransferableWritable {
 
     public FileStream(String filename) {
         super(new File(filename), "rw");
@@ -41,7 +46,11 @@ public class FileStream extends ReadableFileStream implements TruncatableRandomA
     @Override
     public void write(byte[] b) {
         try {
+            StreamWriteEvent event = new StreamWriteEvent();
+            event.begin();
             raf.write(b);
+            if (event.isEnabled())
+                event.commit(this, raf.getFilePointer() - b.length, b.length);
         } catch (IOException ex) {
             throw new RuntimeIOException(ex);
         }
@@ -50,12 +59,37 @@ public class FileStream extends ReadableFileStream implements TruncatableRandomA
     @Override
     public void write(byte[] b, int off, int len) {
         try {
+            StreamWriteEvent event = new StreamWriteEvent();
+            event.begin();
             raf.write(b, off, len);
+            if (event.isEnabled())
+                event.commit(this, raf.getFilePointer() - len, len);
         } catch (IOException ex) {
             throw new RuntimeIOException(ex);
         }
     }
 
+    @Override
+    public void write(ByteBuffer src) {
+        try {
+            StreamWriteEvent event = new StreamWriteEvent();
+            event.begin();
+            int len = src.remaining();
+            // The channel shares its position with the file pointer of raf.
+            while (src.hasRemaining())
+                raf.getChannel().write(src);
+            if (event.isEnabled())
+                event.commit(this, raf.getFilePointer() - len, len);
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        }
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) {
+        return IOUtil.transferFrom(raf.getChannel(), src, position, count);
+    }
+
     @Override
     public void write(int b) {
         try {
@@ -0,0 +1,137 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A histogram of latencies in nanoseconds with fixed, logarithmically sized
+ * buckets: bucket 0 counts latencies of 0 ns, and bucket <code>i</code>
+ * counts latencies in [2<sup>i-1</sup>, 2<sup>i</sup>) ns. Recording is
+ * lock-free and cheap under contention, since every bucket is a
+ * {@link LongAdder}.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public final class LatencyHistogram {
+
+    /** Number of buckets, enough for any non-negative long. */
+    public static final int BUCKET_COUNT = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; ++i)
+            buckets[i] = new LongAdder();
+    }
+
+    /** Returns the index of the bucket counting a latency of <code>nanos</code>. */
+    public static int bucketIndex(long nanos) {
+        return nanos <= 0 ? 0 : Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /** Returns the exclusive upper bound of bucket <code>i</code> in nanoseconds. */
+    public static long bucketUpperBound(int i) {
+        return i >= 63 ? Long.MAX_VALUE : 1L << i;
+    }
+
+    /** Records one latency of <code>nanos</code> nanoseconds. */
+    public void record(long nanos) {
+        buckets[bucketIndex(nanos)].increment();
+        totalNanos.add(Math.max(nanos, 0));
+    }
+
+    /**
+     * Returns the current counts. Recordings made while the snapshot is taken
+     * may or may not be included.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < counts.length; ++i)
+            counts[i] = buckets[i].sum();
+        return new Snapshot(counts, totalNanos.sum());
+    }
+
+    /** The counts of a histogram at one point in time. */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+
+        private Snapshot(long[] counts, long totalNanos) {
+            this.counts = counts;
+            this.totalNanos = totalNanos;
+
+            long count = 0;
+            for (long c : counts)
+                count += c;
+            this.count = count;
+        }
+
+        /** Returns the number of latencies counted in bucket <code>i</code>. */
+        public long getCount(int i) {
+            return counts[i];
+        }
+
+        /** Returns the total number of recorded latencies. */
+        public long getCount() {
+            return count;
+        }
+
+        /** Returns the sum of all recorded latencies in nanoseconds. */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /** Returns the mean latency in nanoseconds, or 0 if nothing was recorded. */
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * Returns an upper bound of the latency below which the fraction
+         * <code>quantile</code> (0.0 to 1.0) of the recorded latencies fall,
+         * i.e. the upper bound of the bucket that the quantile lies in.
+         */
+        public long getQuantileUpperBound(double quantile) {
+            if (quantile < 0 || quantile > 1)
+                throw new IllegalArgumentException("quantile out of range: " + quantile);
+            if (count == 0)
+                return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return bucketUpperBound(i);
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + Math.round(getMeanNanos()) + " ns, p50<" +
+                    getQuantileUpperBound(0.5) + " ns, p99<" + getQuantileUpperBound(0.99) + " ns";
+        }
+    }
+}
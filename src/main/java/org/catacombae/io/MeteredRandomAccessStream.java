@@ -0,0 +1,83 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * A {@link MeteredReadableRandomAccessStream} for streams that are also
+ * writable, which additionally records the number of write calls, the bytes
+ * written and the latency of every write.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public class MeteredRandomAccessStream extends MeteredReadableRandomAccessStream implements RandomAccessStream {
+
+    private final RandomAccessStream target;
+
+    /** Meters <code>target</code> into metrics of its own. */
+    public MeteredRandomAccessStream(RandomAccessStream target) {
+        this(target, new StreamMetrics());
+    }
+
+    /**
+     * Meters <code>target</code> into metrics of its own, which are also
+     * added to the registry metrics for <code>name</code>.
+     */
+    public MeteredRandomAccessStream(RandomAccessStream target, String name) {
+        this(target, new StreamMetrics(StreamMetricsRegistry.getMetrics(name)));
+    }
+
+    /** Meters <code>target</code> into <code>metrics</code>, which may be shared with other streams. */
+    public MeteredRandomAccessStream(RandomAccessStream target, StreamMetrics metrics) {
+        super(target, metrics);
+        this.target = target;
+    }
+
+    @Override
+    public RandomAccessStream getSourceStream() {
+        return target;
+    }
+
+    @Override
+    public void write(byte[] data) {
+        BasicWritable.defaultWrite(this, data);
+    }
+
+    @Override
+    public void write(byte[] data, int off, int len) {
+        long start = System.nanoTime();
+        target.write(data, off, len);
+        getMetrics().recordWrite(len, System.nanoTime() - start);
+    }
+
+    @Override
+    public void write(ByteBuffer src) {
+        int len = src.remaining();
+        long start = System.nanoTime();
+        target.write(src);
+        getMetrics().recordWrite(len, System.nanoTime() - start);
+    }
+
+    @Override
+    public void write(int data) {
+        BasicWritable.defaultWrite(this, data);
+    }
+}
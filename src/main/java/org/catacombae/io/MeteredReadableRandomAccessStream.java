@@ -0,0 +1,139 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.nio.ByteBuffer;
+
+import org.catacombae.util.IOUtil;
+
+
+/**
+ * A ReadableRandomAccessStream that forwards all operations to an underlying
+ * stream and records them in a {@link StreamMetrics}: the number of read
+ * calls, bytes read and short reads, the number of seeks and the distance
+ * they moved the file pointer, and the latency of every read.
+ * <p>
+ * Wrapping each layer of a stack of streams (e.g. the substream, the
+ * concatenated stream and the file stream under it) in a metered stream
+ * shows which layer spends the time. Streams created with a name also
+ * record into the {@link StreamMetricsRegistry} metrics for that name.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public class MeteredReadableRandomAccessStream extends BasicReadableRandomAccessStream
+        implements PositionalReadable, AdvisableRandomAccess {
+
+    protected final ReadableRandomAccessStream source;
+    private final StreamMetrics metrics;
+
+    /** Meters <code>source</code> into metrics of its own. */
+    public MeteredReadableRandomAccessStream(ReadableRandomAccessStream source) {
+        this(source, new StreamMetrics());
+    }
+
+    /**
+     * Meters <code>source</code> into metrics of its own, which are also
+     * added to the registry metrics for <code>name</code>.
+     */
+    public MeteredReadableRandomAccessStream(ReadableRandomAccessStream source, String name) {
+        this(source, new StreamMetrics(StreamMetricsRegistry.getMetrics(name)));
+    }
+
+    /** Meters <code>source</code> into <code>metrics</code>, which may be shared with other streams. */
+    public MeteredReadableRandomAccessStream(ReadableRandomAccessStream source, StreamMetrics metrics) {
+        if (source == null)
+            throw new IllegalArgumentException("source may NOT be null");
+        if (metrics == null)
+            throw new IllegalArgumentException("metrics may NOT be null");
+
+        this.source = source;
+        this.metrics = metrics;
+    }
+
+    /** Returns the stream that is metered by this stream. */
+    public ReadableRandomAccessStream getSourceStream() {
+        return source;
+    }
+
+    /** Returns the metrics that this stream records into. */
+    public StreamMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public int read(byte[] data, int pos, int len) {
+        long start = System.nanoTime();
+        int res = source.read(data, pos, len);
+        metrics.recordRead(len, res, System.nanoTime() - start);
+        return res;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) {
+        int requested = dst.remaining();
+        long start = System.nanoTime();
+        int res = source.read(dst);
+        metrics.recordRead(requested, res, System.nanoTime() - start);
+        return res;
+    }
+
+    @Override
+    public int readAt(long pos, byte[] data, int off, int len) {
+        long start = System.nanoTime();
+        int res = IOUtil.readAt(source, pos, data, off, len);
+        metrics.recordRead(len, res, System.nanoTime() - start);
+        return res;
+    }
+
+    @Override
+    public int readAt(long pos, ByteBuffer dst) {
+        int requested = dst.remaining();
+        long start = System.nanoTime();
+        int res = IOUtil.readAt(source, pos, dst);
+        metrics.recordRead(requested, res, System.nanoTime() - start);
+        return res;
+    }
+
+    @Override
+    public void seek(long pos) {
+        long oldPos = source.getFilePointer();
+        source.seek(pos);
+        metrics.recordSeek(pos - oldPos);
+    }
+
+    @Override
+    public void advise(long pos, long length, AccessHint hint) {
+        IOUtil.advise(source, pos, length, hint);
+    }
+
+    @Override
+    public long length() {
+        return source.length();
+    }
+
+    @Override
+    public long getFilePointer() {
+        return source.getFilePointer();
+    }
+
+    @Override
+    public void close() {
+        source.close();
+    }
+}
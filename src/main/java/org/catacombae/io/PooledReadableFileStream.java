@@ -0,0 +1,332 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * A read-only ReadableRandomAccessStream that serves concurrent positional
+ * reads from a pool of RandomAccessFile handles to the same file.
+ * <p>
+ * Each {@link #readAt(long, byte[], int, int)} borrows a handle, seeks and
+ * reads with it, and returns it to the pool, so readers on different threads
+ * don't contend for one shared file pointer even where positional reads
+ * (<code>pread</code>) are unavailable or slow. This makes the stream a
+ * suitable source for a {@link SynchronizedReadableRandomAccessStream} shared
+ * by many {@link ReadableRandomAccessSubstream}s.
+ * <p>
+ * The pool adapts to the observed contention: it starts with one handle and
+ * opens another only when a reader finds all handles busy, up to
+ * <code>maxHandles</code>. Beyond that readers wait for a handle to be
+ * returned. Handles that have been idle for longer than the idle timeout are
+ * closed again, down to one.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public class PooledReadableFileStream extends BasicReadableRandomAccessStream
+        implements PositionalReadable, AbstractFileStream {
+
+    private static final Logger logger = getLogger(PooledReadableFileStream.class.getName());
+
+    /** Default maximum number of open handles. */
+    public static final int DEFAULT_MAX_HANDLES = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    /** Default time after which an idle handle is closed (10 seconds). */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 10_000;
+
+    private final File file;
+    private final int maxHandles;
+    private final long idleTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition handleReturned = lock.newCondition();
+    /** Idle handles, most recently used first. Guarded by lock. */
+    private final ArrayDeque<Handle> idle = new ArrayDeque<>();
+    /** Number of open handles, idle or borrowed. Guarded by lock. */
+    private int openHandles = 0;
+    /** Guarded by lock. */
+    private int peakHandles = 0;
+    /** Guarded by lock. */
+    private boolean closed = false;
+
+    private final LongAdder waits = new LongAdder();
+
+    private long filePointer = 0;
+
+    private static class Handle {
+
+        final RandomAccessFile raf;
+        long lastUsed;
+
+        Handle(RandomAccessFile raf) {
+            this.raf = raf;
+        }
+    }
+
+    public PooledReadableFileStream(String filename) {
+        this(new File(filename));
+    }
+
+    public PooledReadableFileStream(File file) {
+        this(file, DEFAULT_MAX_HANDLES, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Opens <code>file</code> for pooled reading.
+     *
+     * @param file              the file to open.
+     * @param maxHandles        the maximum number of handles to keep open.
+     * @param idleTimeoutMillis the time after which an idle handle may be
+     *                          closed.
+     */
+    public PooledReadableFileStream(File file, int maxHandles, long idleTimeoutMillis) {
+        logger.log(Level.TRACE, "enter: {}, {}, {}", file, maxHandles, idleTimeoutMillis);
+
+        try {
+            if (maxHandles <= 0)
+                throw new IllegalArgumentException("maxHandles must be positive: " + maxHandles);
+            if (idleTimeoutMillis < 0)
+                throw new IllegalArgumentException("idleTimeoutMillis is negative: " + idleTimeoutMillis);
+
+            this.file = file;
+            this.maxHandles = maxHandles;
+            this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+
+            // Open the first handle right away, so that a missing file is reported here.
+            Handle first = open();
+            first.lastUsed = System.nanoTime();
+            idle.add(first);
+            openHandles = peakHandles = 1;
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        } finally {
+            logger.log(Level.TRACE, "leave");
+        }
+    }
+
+    /** Returns the maximum number of handles this stream keeps open. */
+    public int getMaxHandles() {
+        return maxHandles;
+    }
+
+    /** Returns the number of currently open handles. */
+    public int getHandleCount() {
+        lock.lock();
+        try {
+            return openHandles;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the largest number of handles that have been open at the same time. */
+    public int getPeakHandleCount() {
+        lock.lock();
+        try {
+            return peakHandles;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of times a reader had to wait because all handles were busy. */
+    public long getWaitCount() {
+        return waits.sum();
+    }
+
+    private Handle open() throws IOException {
+        return new Handle(new RandomAccessFile(file, "r"));
+    }
+
+    private Handle borrow() {
+        lock.lock();
+        try {
+            while (true) {
+                if (closed)
+                    throw new RuntimeIOException("Stream is closed!");
+
+                Handle handle = idle.pollFirst();
+                if (handle != null)
+                    return handle;
+
+                if (openHandles < maxHandles) {
+                    // All handles are busy, so grow the pool. The handle is opened outside the lock.
+                    ++openHandles;
+                    peakHandles = Math.max(peakHandles, openHandles);
+                    break;
+                }
+
+                waits.increment();
+                handleReturned.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        logger.log(Level.DEBUG, "opening another handle to " + file);
+
+        try {
+            return open();
+        } catch (IOException ex) {
+            lock.lock();
+            try {
+                --openHandles;
+                handleReturned.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw new RuntimeIOException(ex);
+        }
+    }
+
+    private void release(Handle handle) {
+        List<Handle> toClose = new ArrayList<>();
+
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (closed) {
+                toClose.add(handle);
+                --openHandles;
+            } else {
+                handle.lastUsed = now;
+                idle.addFirst(handle);
+
+                // The least recently used handles are at the end of the deque.
+                while (idle.size() > 1 && now - idle.peekLast().lastUsed > idleTimeoutNanos) {
+                    toClose.add(idle.pollLast());
+                    --openHandles;
+                }
+
+                handleReturned.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (Handle h : toClose) {
+            logger.log(Level.DEBUG, "closing idle handle to " + file);
+            closeQuietly(h);
+        }
+    }
+
+    private static void closeQuietly(Handle handle) {
+        try {
+            handle.raf.close();
+        } catch (IOException ex) {
+            logger.log(Level.DEBUG, "failed to close handle: " + ex);
+        }
+    }
+
+    @Override
+    public int readAt(long pos, byte[] data, int off, int len) {
+        if (pos < 0)
+            throw new IllegalArgumentException("pos is negative: " + pos);
+        if (len == 0)
+            return 0;
+
+        Handle handle = borrow();
+        try {
+            handle.raf.seek(pos);
+            return handle.raf.read(data, off, len);
+        } catch (IOException ex) {
+            throw new RuntimeIOException("pos=" + pos + "," + ex, ex);
+        } finally {
+            release(handle);
+        }
+    }
+
+    @Override
+    public int read(byte[] data, int pos, int len) {
+        int res = readAt(filePointer, data, pos, len);
+        if (res > 0)
+            filePointer += res;
+        return res;
+    }
+
+    @Override
+    public void seek(long pos) {
+        if (pos < 0)
+            throw new RuntimeIOException("Negative seek offset: " + pos);
+
+        filePointer = pos;
+    }
+
+    @Override
+    public long length() {
+        Handle handle = borrow();
+        try {
+            return handle.raf.length();
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        } finally {
+            release(handle);
+        }
+    }
+
+    @Override
+    public long getFilePointer() {
+        return filePointer;
+    }
+
+    /** Closes all idle handles. Borrowed handles are closed when they are returned. */
+    @Override
+    public void close() {
+        logger.log(Level.TRACE, "enter");
+
+        List<Handle> toClose;
+        lock.lock();
+        try {
+            if (closed)
+                throw new RuntimeIOException("Stream is closed!");
+
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            openHandles -= idle.size();
+            idle.clear();
+            handleReturned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        for (Handle handle : toClose)
+            closeQuietly(handle);
+
+        logger.log(Level.TRACE, "leave");
+    }
+
+    @Override
+    public String getOpenPath() {
+        return file.getPath();
+    }
+}
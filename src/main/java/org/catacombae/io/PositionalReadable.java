@@ -0,0 +1,73 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Defines positional reads, i.e. reads from an absolute position that neither
+ * consult nor change the file pointer of the stream.
+ * <p>
+ * Implementations must allow <code>readAt</code> to be invoked concurrently
+ * from several threads, both with each other and with the file pointer based
+ * operations of the stream. This is what allows a
+ * {@link SynchronizedReadableRandomAccessStream} to forward positional reads
+ * to its source without taking its own lock.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public interface PositionalReadable {
+
+    /**
+     * Reads as much data as possible, up to <code>len</code> bytes, from byte
+     * position <code>pos</code> of the stream into <code>data</code> at
+     * position <code>off</code>. Does <b>not</b> change the file pointer of the
+     * stream.
+     *
+     * @param pos  the position in the stream where reading should start.
+     * @param data the array where the output data should be stored.
+     * @param off  the start position in the array where data should be stored.
+     * @param len  the maximum number of bytes to read.
+     * @return the number of bytes that were read, or -1 if no bytes could be
+     * read due to end of stream.
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred.
+     */
+    int readAt(long pos, byte[] data, int off, int len) throws RuntimeIOException;
+
+    /**
+     * Reads as much data as possible, up to <code>dst.remaining()</code> bytes,
+     * from byte position <code>pos</code> of the stream into <code>dst</code>.
+     * The position of <code>dst</code> is advanced by the number of bytes read.
+     * Does <b>not</b> change the file pointer of the stream.
+     * <p>
+     * The default implementation reads into the backing array of heap buffers
+     * with {@link #readAt(long, byte[], int, int)}, and through a temporary
+     * array of at most 64 KiB otherwise.
+     *
+     * @param pos the position in the stream where reading should start.
+     * @param dst the buffer where the output data should be stored.
+     * @return the number of bytes that were read, or -1 if no bytes could be
+     * read due to end of stream.
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred.
+     */
+    default int readAt(long pos, ByteBuffer dst) throws RuntimeIOException {
+        return BasicReadable.defaultReadAt(this, pos, dst);
+    }
+}
@@ -0,0 +1,452 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.catacombae.io.jfr.PrefetchEvent;
+import org.catacombae.util.IOUtil;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * A ReadableRandomAccessStream that detects sequential reading and prefetches
+ * the following blocks of the underlying stream in the background.
+ * <p>
+ * A read is considered sequential when it starts where the previous read
+ * ended, whether it was issued through the file pointer or through
+ * {@link #readAt(long, byte[], int, int)}. After a few sequential reads the
+ * next <code>readAheadBlocks</code> blocks are read into reusable buffers on
+ * an executor, while the caller processes the data it already got. A read
+ * outside the prefetched window cancels the prefetches that are no longer
+ * useful.
+ * <p>
+ * The detection can be overridden with {@link AccessHint}s: after
+ * {@link AccessHint#SEQUENTIAL} prefetching starts with the first read and
+ * covers twice as many blocks, after {@link AccessHint#RANDOM} nothing is
+ * prefetched until the stream is advised {@link AccessHint#NORMAL} again.
+ * <p>
+ * Unless an executor is supplied, prefetching runs on a bounded pool of daemon
+ * threads shared by all instances. The length of the source is sampled when
+ * the stream is created.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public class ReadAheadReadableRandomAccessStream extends BasicReadableRandomAccessStream
+        implements PositionalReadable, AdvisableRandomAccess {
+
+    private static final Logger logger = getLogger(ReadAheadReadableRandomAccessStream.class.getName());
+
+    /** Default size of a prefetched block (1 MiB). */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    /** Default number of blocks to prefetch ahead of the reader. */
+    public static final int DEFAULT_READ_AHEAD_BLOCKS = 4;
+
+    /** Number of consecutive sequential reads before prefetching starts. */
+    private static final int SEQUENTIAL_THRESHOLD = 2;
+
+    private static class DefaultExecutorHolder {
+
+        static final ExecutorService executor;
+
+        static {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "catacombae-readahead-" + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+    }
+
+    private static class Slot {
+
+        final long blockIndex;
+        final byte[] buffer;
+        final FutureTask<Integer> task;
+
+        Slot(long blockIndex, byte[] buffer, FutureTask<Integer> task) {
+            this.blockIndex = blockIndex;
+            this.buffer = buffer;
+            this.task = task;
+        }
+    }
+
+    private final ReadableRandomAccessStream source;
+    private final int blockSize;
+    private final int readAheadBlocks;
+    private final Executor executor;
+    private final long length;
+
+    /** Prefetched or in-flight blocks. Guarded by itself, as is the state below. */
+    private final Map<Long, Slot> slots = new HashMap<>();
+    private final ArrayDeque<byte[]> freeBuffers = new ArrayDeque<>();
+    private long nextSequentialPos = -1;
+    private int sequentialReads = 0;
+    private AccessHint pattern = AccessHint.NORMAL;
+    private boolean closed = false;
+
+    private long filePointer = 0;
+
+    public ReadAheadReadableRandomAccessStream(ReadableRandomAccessStream source) {
+        this(source, DEFAULT_BLOCK_SIZE, DEFAULT_READ_AHEAD_BLOCKS, null);
+    }
+
+    /**
+     * Creates a new read-ahead stream on top of <code>source</code>.
+     *
+     * @param source          the stream to read from.
+     * @param blockSize       the size of each prefetched block in bytes.
+     * @param readAheadBlocks the number of blocks to keep prefetched ahead of
+     *                        a sequential reader.
+     * @param executor        the executor that prefetches run on, or
+     *                        <code>null</code> to use a shared bounded pool.
+     */
+    public ReadAheadReadableRandomAccessStream(ReadableRandomAccessStream source, int blockSize,
+                                              int readAheadBlocks, Executor executor) {
+        if (source == null)
+            throw new IllegalArgumentException("source may NOT be null");
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+        if (readAheadBlocks <= 0)
+            throw new IllegalArgumentException("readAheadBlocks must be positive: " + readAheadBlocks);
+
+        this.source = source;
+        this.blockSize = blockSize;
+        this.readAheadBlocks = readAheadBlocks;
+        this.executor = executor != null ? executor : DefaultExecutorHolder.executor;
+        this.length = source.length();
+    }
+
+    /** Returns the stream that is read ahead by this stream. */
+    public ReadableRandomAccessStream getSourceStream() {
+        return source;
+    }
+
+    @Override
+    public int readAt(long pos, byte[] data, int off, int len) {
+        if (pos < 0)
+            throw new IllegalArgumentException("pos is negative: " + pos);
+
+        synchronized (slots) {
+            if (closed)
+                throw new RuntimeIOException("Stream is closed!");
+
+            if (pos == nextSequentialPos) {
+                ++sequentialReads;
+            } else {
+                sequentialReads = 0;
+                long firstBlock = pos / blockSize;
+                dropSlots(firstBlock, firstBlock + windowBlocks() + 1);
+            }
+        }
+
+        if (len == 0)
+            return 0;
+        if (pos >= length)
+            return -1;
+
+        int bytesToRead = (int) Math.min(len, length - pos);
+        int bytesRead = 0;
+        while (bytesRead < bytesToRead) {
+            long curPos = pos + bytesRead;
+            long blockIndex = curPos / blockSize;
+            int posInBlock = (int) (curPos % blockSize);
+            int curLength = Math.min(bytesToRead - bytesRead, blockSize - posInBlock);
+
+            int res = readFromSlot(blockIndex, posInBlock, data, off + bytesRead, curLength);
+            if (res < 0)
+                res = IOUtil.readAt(source, curPos, data, off + bytesRead, curLength);
+            if (res <= 0)
+                break;
+
+            bytesRead += res;
+        }
+
+        synchronized (slots) {
+            nextSequentialPos = pos + bytesRead;
+            if (!closed && (pattern == AccessHint.SEQUENTIAL ||
+                    pattern == AccessHint.NORMAL && sequentialReads >= SEQUENTIAL_THRESHOLD))
+                schedule(nextSequentialPos);
+        }
+
+        return bytesRead > 0 ? bytesRead : -1;
+    }
+
+    /**
+     * Copies data from the prefetched block <code>blockIndex</code>, waiting
+     * for the prefetch to complete if necessary.
+     *
+     * @return the number of bytes copied, or -1 if the block isn't prefetched
+     * (or its prefetch failed) and must be read directly.
+     */
+    private int readFromSlot(long blockIndex, int posInBlock, byte[] data, int off, int len) {
+        Slot slot;
+        synchronized (slots) {
+            slot = slots.get(blockIndex);
+        }
+
+        if (slot == null)
+            return -1;
+
+        int validBytes;
+        try {
+            validBytes = slot.task.get();
+        } catch (ExecutionException | CancellationException e) {
+            logger.log(Level.DEBUG, "prefetch of block " + blockIndex + " failed", e);
+            synchronized (slots) {
+                slots.remove(blockIndex, slot);
+            }
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeIOException("Interrupted while waiting for read-ahead.");
+        }
+
+        synchronized (slots) {
+            if (slots.get(blockIndex) != slot || posInBlock >= validBytes)
+                return -1;
+
+            int n = Math.min(len, validBytes - posInBlock);
+            System.arraycopy(slot.buffer, posInBlock, data, off, n);
+
+            if (posInBlock + n >= validBytes) {
+                // The block has been consumed, so its buffer can be reused.
+                slots.remove(blockIndex);
+                freeBuffers.push(slot.buffer);
+            }
+
+            return n;
+        }
+    }
+
+    /** Starts prefetching the blocks following <code>pos</code>. Caller must hold the slots lock. */
+    private void schedule(long pos) {
+        long currentBlock = pos / blockSize;
+        dropSlots(currentBlock, currentBlock + windowBlocks() + 1);
+
+        long firstBlock = (pos + blockSize - 1) / blockSize;
+        prefetch(firstBlock, firstBlock + windowBlocks());
+    }
+
+    /**
+     * Starts prefetching the blocks in [<code>firstBlock</code>,
+     * <code>endBlock</code>) that aren't prefetched already. Caller must hold
+     * the slots lock.
+     */
+    private void prefetch(long firstBlock, long endBlock) {
+        for (long blockIndex = firstBlock; blockIndex < endBlock; ++blockIndex) {
+            long blockStart = blockIndex * blockSize;
+            if (blockStart >= length)
+                break;
+            if (slots.containsKey(blockIndex))
+                continue;
+
+            byte[] buffer = freeBuffers.isEmpty() ? new byte[blockSize] : freeBuffers.pop();
+            int blockLength = (int) Math.min(blockSize, length - blockStart);
+            FutureTask<Integer> task = new FutureTask<>(() -> fill(blockStart, buffer, blockLength));
+
+            slots.put(blockIndex, new Slot(blockIndex, buffer, task));
+
+            logger.log(Level.DEBUG, "prefetching block " + blockIndex);
+
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // The task will never run, so a reader waiting for it would block forever.
+                logger.log(Level.DEBUG, "prefetch of block " + blockIndex + " rejected: " + e);
+                slots.remove(blockIndex);
+                freeBuffers.push(buffer);
+                return;
+            }
+        }
+    }
+
+    private int fill(long blockStart, byte[] buffer, int blockLength) {
+        PrefetchEvent event = new PrefetchEvent();
+        event.begin();
+        int bytesRead = 0;
+        while (bytesRead < blockLength) {
+            int res = IOUtil.readAt(source, blockStart + bytesRead, buffer, bytesRead, blockLength - bytesRead);
+            if (res <= 0)
+                break;
+            bytesRead += res;
+        }
+        event.commit(this, blockStart, blockLength, bytesRead);
+        return bytesRead;
+    }
+
+    /**
+     * Drops all slots outside the block range [<code>firstBlock</code>,
+     * <code>endBlock</code>). Caller must hold the slots lock.
+     */
+    private void dropSlots(long firstBlock, long endBlock) {
+        for (Slot slot : new ArrayList<>(slots.values())) {
+            if (slot.blockIndex < firstBlock || slot.blockIndex >= endBlock)
+                dropSlot(slot);
+        }
+
+        while (freeBuffers.size() > windowBlocks())
+            freeBuffers.pop();
+    }
+
+    /** Drops one slot, reusing its buffer if possible. Caller must hold the slots lock. */
+    private void dropSlot(Slot slot) {
+        slots.remove(slot.blockIndex);
+        if (slot.task.isDone() && !slot.task.isCancelled()) {
+            freeBuffers.push(slot.buffer);
+        } else {
+            // A running prefetch may still write to the buffer, so it is abandoned.
+            slot.task.cancel(false);
+        }
+    }
+
+    /** Returns the number of blocks to prefetch ahead of the reader. Caller must hold the slots lock. */
+    private int windowBlocks() {
+        return pattern == AccessHint.SEQUENTIAL ? 2 * readAheadBlocks : readAheadBlocks;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * {@link AccessHint#SEQUENTIAL}, {@link AccessHint#RANDOM} and
+     * {@link AccessHint#NORMAL} apply to the whole stream.
+     * {@link AccessHint#WILLNEED} starts prefetching the beginning of the
+     * range (as many blocks as the read-ahead window holds) unless prefetching
+     * is disabled by {@link AccessHint#RANDOM}, and
+     * {@link AccessHint#DONTNEED} drops the prefetched blocks that overlap
+     * the range. All advice except {@link AccessHint#WILLNEED} is also passed on
+     * to the source.
+     */
+    @Override
+    public void advise(long pos, long length, AccessHint hint) {
+        if (pos < 0)
+            throw new IllegalArgumentException("pos is negative: " + pos);
+        if (length < 0)
+            throw new IllegalArgumentException("length is negative: " + length);
+
+        long end = length == 0 ? this.length : Math.min(this.length, pos + length);
+
+        synchronized (slots) {
+            if (closed)
+                throw new RuntimeIOException("Stream is closed!");
+
+            switch (hint) {
+            case NORMAL:
+            case SEQUENTIAL:
+                pattern = hint;
+                break;
+            case RANDOM:
+                pattern = hint;
+                sequentialReads = 0;
+                dropSlots(0, 0);
+                break;
+            case WILLNEED:
+                if (pattern != AccessHint.RANDOM && pos < end) {
+                    long firstBlock = pos / blockSize;
+                    prefetch(firstBlock, Math.min((end + blockSize - 1) / blockSize, firstBlock + windowBlocks()));
+                }
+                return;
+            case DONTNEED:
+                long firstBlock = pos / blockSize;
+                long endBlock = (end + blockSize - 1) / blockSize;
+                for (Slot slot : new ArrayList<>(slots.values())) {
+                    if (slot.blockIndex >= firstBlock && slot.blockIndex < endBlock)
+                        dropSlot(slot);
+                }
+                break;
+            }
+        }
+
+        IOUtil.advise(source, pos, length, hint);
+    }
+
+    @Override
+    public int read(byte[] data, int pos, int len) {
+        int res = readAt(filePointer, data, pos, len);
+        if (res > 0)
+            filePointer += res;
+        return res;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Seeking away from the sequential read position cancels the prefetches
+     * outside of the read-ahead window at <code>pos</code>.
+     */
+    @Override
+    public void seek(long pos) {
+        synchronized (slots) {
+            if (pos != nextSequentialPos) {
+                sequentialReads = 0;
+                long firstBlock = pos / blockSize;
+                dropSlots(firstBlock, firstBlock + windowBlocks() + 1);
+            }
+        }
+
+        filePointer = pos;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long getFilePointer() {
+        return filePointer;
+    }
+
+    /** Cancels all prefetches and closes the underlying stream. */
+    @Override
+    public void close() {
+        synchronized (slots) {
+            if (closed)
+                throw new RuntimeIOException("Stream is closed!");
+
+            closed = true;
+            dropSlots(0, 0);
+            freeBuffers.clear();
+        }
+
+        source.close();
+    }
+}
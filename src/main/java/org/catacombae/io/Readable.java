@@ -18,6 +18,9 @@
 
 package org.catacombae.io;
 
+import java.nio.ByteBuffer;
+
+
 /**
  * Defines the methods that must exist for a stream to be readable.
  *
@@ -62,6 +65,25 @@ public interface Readable {
      */
     int read(byte[] data, int pos, int len) throws RuntimeIOException;
 
+    /**
+     * Reads as much data as possible from the stream into <code>dst</code>, until it has no bytes
+     * remaining. The data is stored starting at the position of <code>dst</code>, and its position
+     * is advanced by the number of bytes read. If no bytes could be read due to end of stream, -1
+     * is returned.
+     * <p>
+     * The default implementation reads into the backing array of heap buffers
+     * with {@link #read(byte[], int, int)}, and through a temporary array of at
+     * most 64 KiB otherwise.
+     *
+     * @param dst the buffer where the output data should be stored.
+     * @return the number of bytes that were read, or -1 if no bytes could be read due to end of
+     * stream.
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred.
+     */
+    default int read(ByteBuffer dst) throws RuntimeIOException {
+        return BasicReadable.defaultRead(this, dst);
+    }
+
     /**
      * Reads one byte from the stream and return it. If this is not possible due
      * to end of stream, a RuntimeIOException is thrown.
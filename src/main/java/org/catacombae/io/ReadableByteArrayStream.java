@@ -18,12 +18,17 @@
 
 package org.catacombae.io;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+
 /**
  * A ReadableRandomAccessStream implementation backed by a byte array.
  *
  * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
  */
-public class ReadableByteArrayStream extends BasicReadableRandomAccessStream {
+public class ReadableByteArrayStream extends BasicReadableRandomAccessStream implements PositionalReadable, TransferableReadable {
 
     private final byte[] backingArray;
     private final int startOffset;
@@ -72,6 +77,68 @@ public class ReadableByteArrayStream extends BasicReadableRandomAccessStream {
         return trueLen;
     }
 
+    @Override
+    public int read(ByteBuffer dst) {
+        int res = readAt(filePointer, dst);
+        if (res > 0)
+            filePointer += res;
+        return res;
+    }
+
+    @Override
+    public int readAt(long pos, ByteBuffer dst) {
+        if (closed)
+            throw new RuntimeException("File has been closed!");
+        if (pos < 0)
+            throw new IllegalArgumentException("parameter pos out of bounds");
+
+        if (!dst.hasRemaining())
+            return 0;
+        if (pos >= length)
+            return -1;
+
+        int trueLen = (int) Math.min(length - pos, dst.remaining());
+        dst.put(backingArray, startOffset + (int) pos, trueLen);
+        return trueLen;
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) {
+        if (closed)
+            throw new RuntimeException("File has been closed!");
+        if (position < 0)
+            throw new IllegalArgumentException("parameter position out of bounds");
+        if (position >= length)
+            return 0;
+
+        ByteBuffer src = ByteBuffer.wrap(backingArray, startOffset + (int) position,
+                (int) Math.min(length - position, count));
+        try {
+            while (src.hasRemaining()) {
+                if (target.write(src) == 0)
+                    break;
+            }
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        }
+        return src.position() - startOffset - position;
+    }
+
+    @Override
+    public int readAt(long pos, byte[] data, int off, int len) {
+        if (closed)
+            throw new RuntimeException("File has been closed!");
+        if (pos < 0)
+            throw new IllegalArgumentException("parameter pos out of bounds");
+
+        if (pos >= length)
+            return -1;
+
+        int trueLen = (int) Math.min(length - pos, len);
+        System.arraycopy(backingArray, startOffset + (int) pos, data, off, trueLen);
+        return trueLen;
+    }
+
     @Override
     public long length() {
         if (closed)
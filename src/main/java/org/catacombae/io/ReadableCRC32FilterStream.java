@@ -18,13 +18,15 @@
 
 package org.catacombae.io;
 
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
 
 
 /**
  * Updates a CRC32 checksum for each byte you read from the underlying stream.
  * Seeking does not reset the checksum. It is only the read methods and what
- * they return that alter the value of the checksum.
+ * they return that alter the value of the checksum. For checksums of
+ * arbitrary ranges, see {@link org.catacombae.util.BlockChecksumIndex}.
  *
  * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
  */
@@ -54,7 +56,7 @@ public class ReadableCRC32FilterStream implements ReadableRandomAccessStream {
     @Override
     public int read() {
         int res = source.read();
-        if (res > 0) checksum.update(res);
+        if (res >= 0) checksum.update(res);
         return res;
     }
 
@@ -67,15 +69,26 @@ public class ReadableCRC32FilterStream implements ReadableRandomAccessStream {
 
     @Override
     public int read(byte[] data, int pos, int len) {
-        int res = source.read(data);
+        int res = source.read(data, pos, len);
         if (res > 0) checksum.update(data, pos, res);
         return res;
     }
 
+    @Override
+    public int read(ByteBuffer dst) {
+        ByteBuffer readData = dst.duplicate();
+        int res = source.read(dst);
+        if (res > 0) {
+            readData.limit(readData.position() + res);
+            checksum.update(readData);
+        }
+        return res;
+    }
+
     @Override
     public byte readFully() {
         byte res = source.readFully();
-        if (res > 0) checksum.update(res & 0xff);
+        checksum.update(res & 0xff);
         return res;
     }
 
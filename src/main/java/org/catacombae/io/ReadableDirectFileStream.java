@@ -0,0 +1,322 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * A read-only ReadableRandomAccessStream that opens its file with
+ * <code>O_DIRECT</code> ({@link ExtendedOpenOption#DIRECT}), so that reads
+ * bypass the operating system's page cache.
+ * <p>
+ * This is meant for bulk scans (e.g. verifying a whole image) which would
+ * otherwise evict data other processes depend on from the page cache. It is
+ * not a good fit for small random reads, since every read from the file is a
+ * whole number of file system blocks read straight from the device.
+ * <p>
+ * Direct I/O requires the file position, the length and the memory address of
+ * every read to be aligned to the block size of the file system. Reads are
+ * therefore done into pooled, aligned direct buffers of
+ * <code>bufferSize</code> bytes and copied to the caller. Unaligned reads are
+ * widened to block boundaries, and the buffer of the last read is kept, so
+ * that consecutive small reads don't read the same blocks again.
+ * <p>
+ * Not all file systems support direct I/O; see
+ * {@link #isSupported(File)}. The length of the file is sampled when the
+ * stream is opened.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public class ReadableDirectFileStream extends BasicReadableRandomAccessStream
+        implements PositionalReadable, AbstractFileStream {
+
+    private static final Logger logger = getLogger(ReadableDirectFileStream.class.getName());
+
+    /** Default size of each aligned read buffer (1 MiB). */
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    /** Block size to assume when the file system doesn't report one. */
+    private static final int FALLBACK_BLOCK_SIZE = 4096;
+
+    /** Maximum number of idle buffers kept for reuse. */
+    private static final int MAX_POOLED_BUFFERS = 4;
+
+    private final FileChannel channel;
+    private final String openPath;
+    private final long length;
+    private final int blockSize;
+    private final int bufferSize;
+
+    /** Idle aligned buffers. */
+    private final ConcurrentLinkedQueue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledBuffers = new AtomicInteger();
+
+    /** Guards lastBuffer and lastBufferPos. */
+    private final Object lastBufferLock = new Object();
+    /** The buffer of the last read that wasn't consumed entirely, flipped for reading. */
+    private ByteBuffer lastBuffer = null;
+    /** File position of the first byte in lastBuffer. */
+    private long lastBufferPos = 0;
+
+    private long filePointer = 0;
+    private volatile boolean closed = false;
+
+    public ReadableDirectFileStream(String filename) {
+        this(new File(filename));
+    }
+
+    public ReadableDirectFileStream(File file) {
+        this(file, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens <code>file</code> for direct reading.
+     *
+     * @param file       the file to open.
+     * @param bufferSize the size of each aligned read buffer in bytes. It is
+     *                   rounded up to a multiple of the file system's block
+     *                   size.
+     */
+    public ReadableDirectFileStream(File file, int bufferSize) {
+        logger.log(Level.TRACE, "enter: {}, {}", file, bufferSize);
+
+        try {
+            if (bufferSize <= 0)
+                throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+
+            this.blockSize = getBlockSize(file.toPath());
+            this.bufferSize = (int) ((bufferSize + (long) blockSize - 1) / blockSize * blockSize);
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, ExtendedOpenOption.DIRECT);
+            this.openPath = file.getPath();
+            this.length = channel.size();
+        } catch (IOException ex) {
+            throw new RuntimeIOException("Could not open " + file + " for direct I/O: " + ex, ex);
+        } catch (UnsupportedOperationException ex) {
+            RuntimeIOException rex = new RuntimeIOException("Direct I/O is not supported: " + ex);
+            rex.initCause(ex);
+            throw rex;
+        } finally {
+            logger.log(Level.TRACE, "leave");
+        }
+    }
+
+    /**
+     * Returns whether <code>file</code> can be opened for direct I/O, i.e.
+     * whether its file system supports <code>O_DIRECT</code>.
+     */
+    public static boolean isSupported(File file) {
+        try {
+            FileChannel.open(file.toPath(), StandardOpenOption.READ, ExtendedOpenOption.DIRECT).close();
+            return true;
+        } catch (IOException | UnsupportedOperationException ex) {
+            logger.log(Level.DEBUG, "direct I/O not supported for " + file + ": " + ex);
+            return false;
+        }
+    }
+
+    private static int getBlockSize(Path path) throws IOException {
+        try {
+            long blockSize = Files.getFileStore(path).getBlockSize();
+            if (blockSize > 0 && blockSize <= 1024 * 1024 && Long.bitCount(blockSize) == 1)
+                return (int) blockSize;
+        } catch (UnsupportedOperationException ex) {
+            logger.log(Level.DEBUG, "block size not available: " + ex);
+        }
+        return FALLBACK_BLOCK_SIZE;
+    }
+
+    /** Returns the block size that reads are aligned to. */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /** Returns the size of each aligned read buffer in bytes. */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    private ByteBuffer borrowBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer != null) {
+            pooledBuffers.decrementAndGet();
+            return buffer;
+        }
+
+        return ByteBuffer.allocateDirect(bufferSize + blockSize).alignedSlice(blockSize);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        if (pooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS)
+            bufferPool.offer(buffer);
+        else
+            pooledBuffers.decrementAndGet();
+    }
+
+    /**
+     * Copies as much as possible of the range starting at <code>pos</code>
+     * from the last read buffer.
+     *
+     * @return the number of bytes copied, or 0 if <code>pos</code> isn't in
+     * the last read buffer.
+     */
+    private int readFromLastBuffer(long pos, byte[] data, int off, int len) {
+        synchronized (lastBufferLock) {
+            if (lastBuffer == null || pos < lastBufferPos || pos >= lastBufferPos + lastBuffer.limit())
+                return 0;
+
+            int posInBuffer = (int) (pos - lastBufferPos);
+            int curLength = Math.min(len, lastBuffer.limit() - posInBuffer);
+            lastBuffer.get(posInBuffer, data, off, curLength);
+            return curLength;
+        }
+    }
+
+    @Override
+    public int readAt(long pos, byte[] data, int off, int len) {
+        if (closed)
+            throw new RuntimeIOException("Stream is closed!");
+        if (pos < 0)
+            throw new IllegalArgumentException("pos is negative: " + pos);
+        if (len == 0)
+            return 0;
+        if (pos >= length)
+            return -1;
+
+        int bytesToRead = (int) Math.min(len, length - pos);
+        int bytesRead = 0;
+        while (bytesRead < bytesToRead) {
+            long curPos = pos + bytesRead;
+
+            int cachedLength = readFromLastBuffer(curPos, data, off + bytesRead, bytesToRead - bytesRead);
+            if (cachedLength > 0) {
+                bytesRead += cachedLength;
+                continue;
+            }
+
+            long alignedPos = curPos - curPos % blockSize;
+            ByteBuffer buffer = borrowBuffer();
+            try {
+                buffer.clear();
+                // Stop at end of file; only the last read of the file comes back short of a block boundary.
+                while (buffer.hasRemaining() && buffer.position() % blockSize == 0 &&
+                        alignedPos + buffer.position() < length) {
+                    if (channel.read(buffer, alignedPos + buffer.position()) <= 0)
+                        break;
+                }
+            } catch (IOException ex) {
+                releaseBuffer(buffer);
+                throw new RuntimeIOException("pos=" + alignedPos + "," + ex, ex);
+            }
+            buffer.flip();
+
+            int posInBuffer = (int) (curPos - alignedPos);
+            if (posInBuffer >= buffer.limit()) {
+                // The file shrunk after its length was sampled.
+                releaseBuffer(buffer);
+                break;
+            }
+
+            int curLength = Math.min(bytesToRead - bytesRead, buffer.limit() - posInBuffer);
+            buffer.get(posInBuffer, data, off + bytesRead, curLength);
+            bytesRead += curLength;
+
+            if (posInBuffer + curLength < buffer.limit()) {
+                // Keep the unconsumed tail around for the next read.
+                ByteBuffer previous;
+                synchronized (lastBufferLock) {
+                    previous = lastBuffer;
+                    lastBuffer = buffer;
+                    lastBufferPos = alignedPos;
+                }
+                if (previous != null)
+                    releaseBuffer(previous);
+            } else {
+                releaseBuffer(buffer);
+            }
+        }
+
+        return bytesRead > 0 ? bytesRead : -1;
+    }
+
+    @Override
+    public int read(byte[] data, int pos, int len) {
+        int res = readAt(filePointer, data, pos, len);
+        if (res > 0)
+            filePointer += res;
+        return res;
+    }
+
+    @Override
+    public void seek(long pos) {
+        if (closed)
+            throw new RuntimeIOException("Stream is closed!");
+        if (pos < 0)
+            throw new RuntimeIOException("Negative seek offset: " + pos);
+
+        filePointer = pos;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long getFilePointer() {
+        return filePointer;
+    }
+
+    @Override
+    public void close() {
+        logger.log(Level.TRACE, "enter");
+
+        try {
+            closed = true;
+            synchronized (lastBufferLock) {
+                lastBuffer = null;
+            }
+            bufferPool.clear();
+            channel.close();
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        } finally {
+            logger.log(Level.TRACE, "leave");
+        }
+    }
+
+    @Override
+    public String getOpenPath() {
+        return openPath;
+    }
+}
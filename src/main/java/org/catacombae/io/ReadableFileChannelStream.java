@@ -0,0 +1,208 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+
+import org.catacombae.util.IOUtil;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * This class wraps a java.nio.channels.FileChannel (opened in read-only mode)
+ * and maps its operations to the operations of ReadableRandomAccessStream.
+ * <p>
+ * Unlike {@link ReadableFileStream}, the file pointer is kept in this object
+ * and never in the underlying file descriptor. All reads are served with
+ * positional reads (<code>pread</code>), so several threads may read from the
+ * same file using {@link #readAt(long, byte[], int, int)} without seeking or
+ * serializing on a shared file pointer.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public class ReadableFileChannelStream extends BasicReadableRandomAccessStream
+        implements PositionalReadable, TransferableReadable, AsyncReadableRandomAccess,
+        AbstractFileStream {
+
+    private static final Logger logger = getLogger(ReadableFileChannelStream.class.getName());
+
+    protected final FileChannel channel;
+    private final String openPath;
+    private final AsynchronousFileChannelHolder asyncChannel;
+    protected long filePointer = 0;
+
+    public ReadableFileChannelStream(String filename) {
+        this(new File(filename));
+    }
+
+    public ReadableFileChannelStream(File file) {
+        this(file, StandardOpenOption.READ);
+    }
+
+    public ReadableFileChannelStream(FileChannel channel, String openPath) {
+        logger.log(Level.TRACE, "enter: {}", channel);
+
+        try {
+            if (channel == null)
+                throw new IllegalArgumentException("channel may NOT be null");
+            this.channel = channel;
+            this.openPath = openPath;
+            this.asyncChannel = new AsynchronousFileChannelHolder(null);
+        } finally {
+            logger.log(Level.TRACE, "leave");
+        }
+    }
+
+    protected ReadableFileChannelStream(File file, OpenOption... options) {
+        logger.log(Level.TRACE, "enter: {}", file);
+
+        try {
+            this.channel = FileChannel.open(file.toPath(), options);
+            this.openPath = file.getPath();
+            this.asyncChannel = new AsynchronousFileChannelHolder(file.getPath());
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        } finally {
+            logger.log(Level.TRACE, "leave");
+        }
+    }
+
+    @Override
+    public void seek(long pos) {
+        logger.log(Level.TRACE, "enter: {}", pos);
+
+        if (pos < 0)
+            throw new RuntimeIOException("Negative seek offset: " + pos);
+
+        filePointer = pos;
+
+        logger.log(Level.TRACE, "leave: {}", pos);
+    }
+
+    @Override
+    public int read(byte[] data, int pos, int len) {
+        logger.log(Level.TRACE, "enter: {}, {}, {}", data, pos, len);
+
+        try {
+            int res = readAt(filePointer, data, pos, len);
+            if (res > 0)
+                filePointer += res;
+            logger.log(Level.TRACE, "return: {}", res);
+            return res;
+        } finally {
+            logger.log(Level.TRACE, "leave: {}, {}, {}", data, pos, len);
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) {
+        int res = readAt(filePointer, dst);
+        if (res > 0)
+            filePointer += res;
+        return res;
+    }
+
+    @Override
+    public int readAt(long pos, byte[] data, int off, int len) {
+        return readAt(pos, ByteBuffer.wrap(data, off, len));
+    }
+
+    @Override
+    public int readAt(long pos, ByteBuffer dst) {
+        if (!dst.hasRemaining())
+            return 0;
+
+        try {
+            int res = channel.read(dst, pos);
+            while (res >= 0 && dst.hasRemaining()) {
+                int cur = channel.read(dst, pos + res);
+                if (cur <= 0)
+                    break;
+                res += cur;
+            }
+            return res;
+        } catch (IOException ex) {
+            throw new RuntimeIOException("pos=" + pos + "," + ex, ex);
+        }
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) {
+        return IOUtil.transferTo(channel, position, count, target);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Streams opened from a file read through an AsynchronousFileChannel that
+     * is opened on first use. Streams created around an already open FileChannel
+     * fall back to blocking reads on a shared, bounded pool of threads.
+     */
+    @Override
+    public CompletableFuture<Integer> readAsync(long pos, ByteBuffer dst) {
+        return asyncChannel.readAsync(pos, dst, this);
+    }
+
+    @Override
+    public long length() {
+        logger.log(Level.TRACE, "enter");
+
+        try {
+            return channel.size();
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        } finally {
+            logger.log(Level.TRACE, "leave");
+        }
+    }
+
+    @Override
+    public long getFilePointer() {
+        return filePointer;
+    }
+
+    @Override
+    public void close() {
+        logger.log(Level.TRACE, "enter");
+
+        try {
+            asyncChannel.close();
+            channel.close();
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        } finally {
+            logger.log(Level.TRACE, "leave");
+        }
+    }
+
+    @Override
+    public String getOpenPath() {
+        return openPath;
+    }
+}
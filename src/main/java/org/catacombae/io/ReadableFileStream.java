@@ -23,6 +23,13 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+
+import org.catacombae.io.jfr.StreamReadEvent;
+import org.catacombae.io.jfr.StreamSeekEvent;
+import org.catacombae.util.IOUtil;
 
 import static java.lang.System.getLogger;
 
@@ -30,15 +37,19 @@ import static java.lang.System.getLogger;
 /**
  * This class wraps a java.io.RandomAccessFile (opened in read-only mode) and
  * maps its operations to the operations of ReadableRandomAccessStream.
+ * Positional reads go through the file's channel and leave the file pointer of
+ * the RandomAccessFile untouched.
  *
  * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
  */
-public class ReadableFileStream implements ReadableRandomAccessStream, AbstractFileStream {
+public class ReadableFileStream implements ReadableRandomAccessStream, PositionalReadable, TransferableReadable,
+        AsyncReadableRandomAccess, AbstractFileStream {
 
     private static final Logger logger = getLogger(ReadableFileStream.class.getName());
 
     protected final RandomAccessFile raf;
     private final String openPath;
+    private final AsynchronousFileChannelHolder asyncChannel;
 
     public ReadableFileStream(String filename) {
         this(new File(filename));
@@ -56,6 +67,7 @@ public class ReadableFileStream implements ReadableRandomAccessStream, AbstractF
                 throw new IllegalArgumentException("raf may NOT be null");
             this.raf = raf;
             this.openPath = openPath;
+            this.asyncChannel = new AsynchronousFileChannelHolder(null);
         } finally {
             logger.log(Level.TRACE, "leave");
         }
@@ -71,6 +83,7 @@ public class ReadableFileStream implements ReadableRandomAccessStream, AbstractF
         try {
             this.raf = new RandomAccessFile(file, mode);
             this.openPath = file.getPath();
+            this.asyncChannel = new AsynchronousFileChannelHolder(file.getPath());
         } catch (IOException ex) {
             throw new RuntimeIOException(ex);
         } finally {
@@ -84,7 +97,10 @@ public class ReadableFileStream implements ReadableRandomAccessStream, AbstractF
 
 
         try {
+            StreamSeekEvent event = new StreamSeekEvent();
+            event.begin();
             raf.seek(pos);
+            event.commit(this, pos);
         } catch (IOException ioe) {
             throw new RuntimeIOException("pos=" + pos + "," + ioe, ioe);
         } finally {
@@ -112,7 +128,11 @@ public class ReadableFileStream implements ReadableRandomAccessStream, AbstractF
         logger.log(Level.TRACE, "enter: {}", data);
 
         try {
+            StreamReadEvent event = new StreamReadEvent();
+            event.begin();
             int res = raf.read(data);
+            if (event.isEnabled())
+                event.commit(this, raf.getFilePointer() - Math.max(res, 0), data.length, res);
             logger.log(Level.TRACE, "return: {}", res);
             return res;
         } catch (IOException ex) {
@@ -127,7 +147,11 @@ public class ReadableFileStream implements ReadableRandomAccessStream, AbstractF
         logger.log(Level.TRACE, "enter: {}, {}, {}", data, pos, len);
 
         try {
+            StreamReadEvent event = new StreamReadEvent();
+            event.begin();
             int res = raf.read(data, pos, len);
+            if (event.isEnabled())
+                event.commit(this, raf.getFilePointer() - Math.max(res, 0), len, res);
             logger.log(Level.TRACE, "return: {}", res);
             return res;
         } catch (IOException ex) {
@@ -137,6 +161,88 @@ public class ReadableFileStream implements ReadableRandomAccessStream, AbstractF
         }
     }
 
+    @Override
+    public int read(ByteBuffer dst) {
+        logger.log(Level.TRACE, "enter: {}", dst);
+
+        try {
+            if (!dst.hasRemaining())
+                return 0;
+
+            StreamReadEvent event = new StreamReadEvent();
+            event.begin();
+            int requested = dst.remaining();
+            // The channel shares its position with the file pointer of raf.
+            int res = raf.getChannel().read(dst);
+            if (event.isEnabled())
+                event.commit(this, raf.getFilePointer() - Math.max(res, 0), requested, res);
+            logger.log(Level.TRACE, "return: {}", res);
+            return res;
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        } finally {
+            logger.log(Level.TRACE, "leave: {}", dst);
+        }
+    }
+
+    @Override
+    public int readAt(long pos, byte[] data, int off, int len) {
+        return readAt(pos, ByteBuffer.wrap(data, off, len));
+    }
+
+    @Override
+    public int readAt(long pos, ByteBuffer dst) {
+        logger.log(Level.TRACE, "enter: {}, {}", pos, dst);
+
+        try {
+            if (!dst.hasRemaining())
+                return 0;
+
+            StreamReadEvent event = new StreamReadEvent();
+            event.begin();
+            int requested = dst.remaining();
+            int res = raf.getChannel().read(dst, pos);
+            while (res >= 0 && dst.hasRemaining()) {
+                int cur = raf.getChannel().read(dst, pos + res);
+                if (cur <= 0)
+                    break;
+                res += cur;
+            }
+            event.commit(this, pos, requested, res);
+            logger.log(Level.TRACE, "return: {}", res);
+            return res;
+        } catch (IOException ex) {
+            throw new RuntimeIOException("pos=" + pos + "," + ex, ex);
+        } finally {
+            logger.log(Level.TRACE, "leave: {}, {}", pos, dst);
+        }
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) {
+        logger.log(Level.TRACE, "enter: {}, {}, {}", position, count, target);
+
+        try {
+            long res = IOUtil.transferTo(raf.getChannel(), position, count, target);
+            logger.log(Level.TRACE, "return: {}", res);
+            return res;
+        } finally {
+            logger.log(Level.TRACE, "leave: {}, {}, {}", position, count, target);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Streams opened from a file read through an AsynchronousFileChannel that
+     * is opened on first use. Streams created around an already open RandomAccessFile
+     * fall back to blocking reads on a shared, bounded pool of threads.
+     */
+    @Override
+    public CompletableFuture<Integer> readAsync(long pos, ByteBuffer dst) {
+        return asyncChannel.readAsync(pos, dst, this);
+    }
+
     @Override
     public byte readFully() {
         logger.log(Level.TRACE, "enter");
@@ -157,7 +263,11 @@ public class ReadableFileStream implements ReadableRandomAccessStream, AbstractF
         logger.log(Level.TRACE, "enter: {}", data);
 
         try {
+            StreamReadEvent event = new StreamReadEvent();
+            event.begin();
             raf.readFully(data);
+            if (event.isEnabled())
+                event.commit(this, raf.getFilePointer() - data.length, data.length, data.length);
         } catch (IOException ex) {
             throw new RuntimeIOException(ex);
         } finally {
@@ -170,7 +280,11 @@ public class ReadableFileStream implements ReadableRandomAccessStream, AbstractF
         logger.log(Level.TRACE, "enter: {}, {}, {}", data, offset, length);
 
         try {
+            StreamReadEvent event = new StreamReadEvent();
+            event.begin();
             raf.readFully(data, offset, length);
+            if (event.isEnabled())
+                event.commit(this, raf.getFilePointer() - length, length, length);
         } catch (IOException ex) {
             throw new RuntimeIOException(ex);
         } finally {
@@ -211,6 +325,7 @@ public class ReadableFileStream implements ReadableRandomAccessStream, AbstractF
         logger.log(Level.TRACE, "enter");
 
         try {
+            asyncChannel.close();
             raf.close();
         } catch (IOException ex) {
             throw new RuntimeIOException(ex);
@@ -18,6 +18,11 @@
 
 package org.catacombae.io;
 
+import java.nio.ByteBuffer;
+
+import org.catacombae.util.IOUtil;
+
+
 /**
  * Wraps a ReadableRandomAccessStream inside this one and maps all operations
  * one to one to the underlying ReadableRandomAccessStream.
@@ -27,7 +32,7 @@ package org.catacombae.io;
  *
  * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
  */
-public class ReadableFilterStream implements ReadableRandomAccessStream {
+public class ReadableFilterStream implements ReadableRandomAccessStream, AdvisableRandomAccess {
 
     protected final ReadableRandomAccessStream backingStore;
 
@@ -55,6 +60,11 @@ public class ReadableFilterStream implements ReadableRandomAccessStream {
         return backingStore.read(data, pos, len);
     }
 
+    @Override
+    public int read(ByteBuffer dst) {
+        return backingStore.read(dst);
+    }
+
     @Override
     public byte readFully() {
         return backingStore.readFully();
@@ -84,4 +94,9 @@ public class ReadableFilterStream implements ReadableRandomAccessStream {
     public void close() {
         backingStore.close();
     }
+
+    @Override
+    public void advise(long pos, long length, AccessHint hint) {
+        IOUtil.advise(backingStore, pos, length, hint);
+    }
 }
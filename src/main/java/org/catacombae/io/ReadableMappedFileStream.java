@@ -0,0 +1,357 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.catacombae.util.IOUtil;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * A read-only ReadableRandomAccessStream that serves reads by copying from
+ * memory mappings of the file instead of issuing a system call per read.
+ * <p>
+ * The file is mapped lazily in aligned windows of <code>windowSize</code>
+ * bytes, which gets around the 2 GiB limit of a single MappedByteBuffer. At
+ * most <code>maxMappedWindows</code> windows are kept mapped at any time; when
+ * the limit is exceeded the least recently mapped window is dropped and will
+ * be remapped on its next access. Dropped windows are unmapped by the garbage
+ * collector once no reader references them any more, so a concurrent reader
+ * can never observe an unmapped window.
+ * <p>
+ * {@link AccessHint#WILLNEED} maps and loads the windows covering the range,
+ * and {@link AccessHint#DONTNEED} drops the windows that lie entirely within
+ * it.
+ * <p>
+ * The length of the file is sampled when the stream is opened. The file must
+ * not be truncated while it is mapped.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public class ReadableMappedFileStream extends BasicReadableRandomAccessStream
+        implements PositionalReadable, TransferableReadable, AdvisableRandomAccess, AbstractFileStream {
+
+    private static final Logger logger = getLogger(ReadableMappedFileStream.class.getName());
+
+    /** Default size of each mapped window (64 MiB). */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /** Default number of windows that may be mapped at the same time. */
+    public static final int DEFAULT_MAX_MAPPED_WINDOWS = 64;
+
+    private final FileChannel channel;
+    private final String openPath;
+    private final long length;
+    private final int windowSize;
+    private final int maxMappedWindows;
+    private final boolean preload;
+    private final AtomicReferenceArray<MappedByteBuffer> windows;
+    /** Indices of the currently mapped windows in mapping order. Guarded by itself. */
+    private final ArrayDeque<Integer> mapOrder = new ArrayDeque<>();
+    private long filePointer = 0;
+    private volatile boolean closed = false;
+
+    public ReadableMappedFileStream(String filename) {
+        this(new File(filename));
+    }
+
+    public ReadableMappedFileStream(File file) {
+        this(file, DEFAULT_WINDOW_SIZE, DEFAULT_MAX_MAPPED_WINDOWS, false);
+    }
+
+    /**
+     * Opens <code>file</code> for mapped reading.
+     *
+     * @param file             the file to open.
+     * @param windowSize       the size of each mapped window in bytes.
+     * @param maxMappedWindows the maximum number of windows to keep mapped
+     *                         at the same time, or 0 for no limit.
+     * @param preload          whether to load the contents of each window into
+     *                         physical memory (MappedByteBuffer.load()) when it
+     *                         is mapped.
+     */
+    public ReadableMappedFileStream(File file, int windowSize, int maxMappedWindows, boolean preload) {
+        logger.log(Level.TRACE, "enter: {}, {}, {}, {}", file, windowSize, maxMappedWindows, preload);
+
+        try {
+            if (windowSize <= 0)
+                throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+            if (maxMappedWindows < 0)
+                throw new IllegalArgumentException("maxMappedWindows is negative: " + maxMappedWindows);
+
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            this.openPath = file.getPath();
+            this.length = channel.size();
+            this.windowSize = windowSize;
+            this.maxMappedWindows = maxMappedWindows;
+            this.preload = preload;
+
+            long windowCount = (length + windowSize - 1) / windowSize;
+            if (windowCount > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("windowSize too small for file of length " + length);
+            this.windows = new AtomicReferenceArray<>((int) windowCount);
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        } finally {
+            logger.log(Level.TRACE, "leave");
+        }
+    }
+
+    /** Returns the size of each mapped window in bytes. */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    private MappedByteBuffer getWindow(int index) {
+        MappedByteBuffer window = windows.get(index);
+        if (window != null)
+            return window;
+
+        synchronized (mapOrder) {
+            if (closed)
+                throw new RuntimeIOException("Stream is closed!");
+
+            window = windows.get(index);
+            if (window != null)
+                return window;
+
+            long windowStart = (long) index * windowSize;
+            long windowLength = Math.min(windowSize, length - windowStart);
+
+            logger.log(Level.DEBUG, "mapping window " + index + " (" + windowStart + ", " + windowLength + ")");
+
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+            } catch (IOException ex) {
+                throw new RuntimeIOException("Could not map window at " + windowStart, ex);
+            }
+
+            if (preload)
+                window.load();
+
+            windows.set(index, window);
+            mapOrder.addLast(index);
+
+            if (maxMappedWindows > 0 && mapOrder.size() > maxMappedWindows) {
+                int evicted = mapOrder.removeFirst();
+
+                logger.log(Level.DEBUG, "dropping window " + evicted);
+
+                windows.set(evicted, null);
+            }
+
+            return window;
+        }
+    }
+
+    @Override
+    public int readAt(long pos, byte[] data, int off, int len) {
+        if (closed)
+            throw new RuntimeIOException("Stream is closed!");
+        if (pos < 0)
+            throw new IllegalArgumentException("pos is negative: " + pos);
+        if (len == 0)
+            return 0;
+        if (pos >= length)
+            return -1;
+
+        int bytesRead = 0;
+        int bytesToRead = (int) Math.min(len, length - pos);
+        while (bytesRead < bytesToRead) {
+            long curPos = pos + bytesRead;
+            MappedByteBuffer window = getWindow((int) (curPos / windowSize));
+            int posInWindow = (int) (curPos % windowSize);
+            int curLength = Math.min(bytesToRead - bytesRead, window.limit() - posInWindow);
+
+            window.get(posInWindow, data, off + bytesRead, curLength);
+            bytesRead += curLength;
+        }
+
+        return bytesRead;
+    }
+
+    @Override
+    public int readAt(long pos, ByteBuffer dst) {
+        if (closed)
+            throw new RuntimeIOException("Stream is closed!");
+        if (pos < 0)
+            throw new IllegalArgumentException("pos is negative: " + pos);
+        if (!dst.hasRemaining())
+            return 0;
+        if (pos >= length)
+            return -1;
+
+        int bytesRead = 0;
+        int bytesToRead = (int) Math.min(dst.remaining(), length - pos);
+        while (bytesRead < bytesToRead) {
+            long curPos = pos + bytesRead;
+            MappedByteBuffer window = getWindow((int) (curPos / windowSize));
+            int posInWindow = (int) (curPos % windowSize);
+            int curLength = Math.min(bytesToRead - bytesRead, window.limit() - posInWindow);
+
+            dst.put(window.slice(posInWindow, curLength));
+            bytesRead += curLength;
+        }
+
+        return bytesRead;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Transfers go through the file channel rather than the mapped windows and
+     * are limited to the length sampled when the stream was opened.
+     */
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) {
+        if (closed)
+            throw new RuntimeIOException("Stream is closed!");
+        if (position >= length)
+            return 0;
+
+        return IOUtil.transferTo(channel, position, Math.min(count, length - position), target);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * {@link AccessHint#WILLNEED} maps the windows covering the range (at
+     * most as many as may be mapped at the same time) and loads their
+     * contents into physical memory before returning.
+     * {@link AccessHint#DONTNEED} drops the windows that lie entirely within
+     * the range. The other hints would need madvise(2), which isn't
+     * reachable from Java, and are ignored.
+     */
+    @Override
+    public void advise(long pos, long length, AccessHint hint) {
+        if (closed)
+            throw new RuntimeIOException("Stream is closed!");
+        if (pos < 0)
+            throw new IllegalArgumentException("pos is negative: " + pos);
+        if (length < 0)
+            throw new IllegalArgumentException("length is negative: " + length);
+
+        long end = length == 0 ? this.length : Math.min(this.length, pos + length);
+        if (pos >= end)
+            return;
+
+        switch (hint) {
+        case WILLNEED: {
+            int firstWindow = (int) (pos / windowSize);
+            int lastWindow = (int) ((end - 1) / windowSize);
+            if (maxMappedWindows > 0)
+                lastWindow = Math.min(lastWindow, firstWindow + maxMappedWindows - 1);
+
+            for (int i = firstWindow; i <= lastWindow; ++i)
+                getWindow(i).load();
+            break;
+        }
+        case DONTNEED: {
+            int firstWindow = (int) ((pos + windowSize - 1) / windowSize);
+            // The last window is shorter than windowSize, so it is covered if the range reaches the end.
+            int endWindow = (int) (end == this.length ? (end + windowSize - 1) / windowSize : end / windowSize);
+            synchronized (mapOrder) {
+                for (int i = firstWindow; i < endWindow; ++i) {
+                    if (windows.getAndSet(i, null) != null) {
+                        logger.log(Level.DEBUG, "dropping window " + i);
+
+                        mapOrder.remove(i);
+                    }
+                }
+            }
+            break;
+        }
+        default:
+            break;
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) {
+        int res = readAt(filePointer, dst);
+        if (res > 0)
+            filePointer += res;
+        return res;
+    }
+
+    @Override
+    public int read(byte[] data, int pos, int len) {
+        int res = readAt(filePointer, data, pos, len);
+        if (res > 0)
+            filePointer += res;
+        return res;
+    }
+
+    @Override
+    public void seek(long pos) {
+        if (closed)
+            throw new RuntimeIOException("Stream is closed!");
+        if (pos < 0)
+            throw new RuntimeIOException("Negative seek offset: " + pos);
+
+        filePointer = pos;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long getFilePointer() {
+        return filePointer;
+    }
+
+    @Override
+    public void close() {
+        logger.log(Level.TRACE, "enter");
+
+        try {
+            synchronized (mapOrder) {
+                closed = true;
+                for (int i = 0; i < windows.length(); ++i)
+                    windows.set(i, null);
+                mapOrder.clear();
+            }
+
+            channel.close();
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        } finally {
+            logger.log(Level.TRACE, "leave");
+        }
+    }
+
+    @Override
+    public String getOpenPath() {
+        return openPath;
+    }
+}
@@ -28,7 +28,9 @@ import static java.lang.System.getLogger;
 
 /**
  * This class subclasses java.io.InputStream to transform a part of a
- * SynchronizedRandomAccessStream into an ordinary InputStream.
+ * SynchronizedReadableRandomAccess, such as a
+ * {@link SynchronizedReadableRandomAccessStream} or a
+ * {@link ConcurrentReadableRandomAccessStream}, into an ordinary InputStream.
  *
  * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
  */
@@ -36,12 +38,12 @@ public class ReadableRandomAccessInputStream extends InputStream {
 
     private static final Logger logger = getLogger(ReadableRandomAccessInputStream.class.getName());
 
-    private final SynchronizedReadableRandomAccessStream ras;
+    private final SynchronizedReadableRandomAccess ras;
     private long streamPos;
     private final long endPos;
 
     /** length == -1 means length == ras.length() */
-    public ReadableRandomAccessInputStream(SynchronizedReadableRandomAccessStream ras, long offset, long length) {
+    public ReadableRandomAccessInputStream(SynchronizedReadableRandomAccess ras, long offset, long length) {
         long rasLength = ras.length();
         if (length == -1)
             length = rasLength;
@@ -58,7 +60,7 @@ public class ReadableRandomAccessInputStream extends InputStream {
      * Constructs an InputStream that covers the data contained in the underlying
      * RandomAccessStream, from the beginning, to the end.
      */
-    public ReadableRandomAccessInputStream(SynchronizedReadableRandomAccessStream ras) {
+    public ReadableRandomAccessInputStream(SynchronizedReadableRandomAccess ras) {
         this(ras, 0, -1);
     }
 
@@ -73,7 +75,7 @@ public class ReadableRandomAccessInputStream extends InputStream {
             return (int) remaining;
     }
 
-    /** Does not do anything. The underlying SynchronizedReadableRandomAccessStream might be in use by others. */
+    /** Does not do anything. The underlying SynchronizedReadableRandomAccess might be in use by others. */
     @Override
     public void close() throws IOException {
     }
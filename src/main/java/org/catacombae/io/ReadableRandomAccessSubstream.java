@@ -20,6 +20,11 @@ package org.catacombae.io;
 
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+
+import org.catacombae.util.IOUtil;
 
 import static java.lang.System.getLogger;
 
@@ -31,7 +36,9 @@ import static java.lang.System.getLogger;
  *
  * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
  */
-public class ReadableRandomAccessSubstream extends BasicReadableRandomAccessStream {
+public class ReadableRandomAccessSubstream extends BasicReadableRandomAccessStream
+        implements PositionalReadable, TransferableReadable, VectoredReadable,
+        AsyncReadableRandomAccess, AdvisableRandomAccess {
 
     private static final Logger logger = getLogger(ReadableRandomAccessSubstream.class.getName());
 
@@ -90,4 +97,59 @@ public class ReadableRandomAccessSubstream extends BasicReadableRandomAccessStre
             return -1;
         }
     }
+
+    @Override
+    public int read(ByteBuffer dst) throws RuntimeIOException {
+        int bytesRead = readAt(internalFP, dst);
+        if (bytesRead > 0)
+            internalFP += bytesRead;
+        return bytesRead;
+    }
+
+    @Override
+    public int readAt(long pos, byte[] b, int off, int len) throws RuntimeIOException {
+        return sourceStream.readFrom(pos, b, off, len);
+    }
+
+    @Override
+    public int readAt(long pos, ByteBuffer dst) throws RuntimeIOException {
+        if (sourceStream instanceof PositionalReadable)
+            return ((PositionalReadable) sourceStream).readAt(pos, dst);
+        else
+            return BasicReadable.defaultReadAt(this, pos, dst);
+    }
+
+    @Override
+    public void readFullyAt(long[] positions, byte[][] buffers, int[] offsets, int[] lengths)
+            throws RuntimeIOException {
+        if (sourceStream instanceof VectoredReadable) {
+            ((VectoredReadable) sourceStream).readFullyAt(positions, buffers, offsets, lengths);
+            return;
+        }
+
+        for (int i = 0; i < positions.length; ++i)
+            IOUtil.readFullyAt(this, positions[i], buffers[i], offsets[i], lengths[i]);
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws RuntimeIOException {
+        if (sourceStream instanceof TransferableReadable)
+            return ((TransferableReadable) sourceStream).transferTo(position, count, target);
+        else
+            return BasicReadable.defaultTransferTo(this, position, count, target);
+    }
+
+    @Override
+    public CompletableFuture<Integer> readAsync(long pos, ByteBuffer dst) {
+        if (sourceStream instanceof AsyncReadableRandomAccess)
+            return ((AsyncReadableRandomAccess) sourceStream).readAsync(pos, dst);
+        else
+            return IOUtil.readAtAsync(this, pos, dst, null);
+    }
+
+    @Override
+    public void advise(long pos, long length, AccessHint hint) throws RuntimeIOException {
+        if (sourceStream instanceof AdvisableRandomAccess)
+            ((AdvisableRandomAccess) sourceStream).advise(pos, length, hint);
+    }
 }
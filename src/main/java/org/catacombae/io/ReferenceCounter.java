@@ -0,0 +1,283 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.Cleaner;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.catacombae.util.Util;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Lock-free reference counting for shared streams such as
+ * {@link SynchronizedReadableRandomAccessStream}.
+ * <p>
+ * The count and the closed flag of the owner are kept in a single word that
+ * is updated with compare-and-set. The owner starts out holding one reference
+ * to itself, which is dropped by {@link #close()}. When the count reaches zero
+ * the owner should close its underlying stream.
+ * <p>
+ * Leaks are detected with a {@link Cleaner}: if the owner becomes unreachable
+ * while references remain, a warning is logged. To tell where the leaked
+ * references were taken, the stack of 1 in <code>sampleRate</code> references
+ * is captured when they are added (0 disables capturing). In debug mode every
+ * reference is captured and misuse, like adding the same referrer twice, is
+ * detected.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+final class ReferenceCounter implements Runnable {
+
+    private static final Logger logger = getLogger(ReferenceCounter.class.getName());
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(ReferenceCounter.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final long CLOSED = 1L << 62;
+    private static final long COUNT_MASK = CLOSED - 1;
+
+    /** Reference count, with the CLOSED bit set once the owner has been closed. */
+    @SuppressWarnings("unused")
+    private volatile long state = 1;
+
+    private final String ownerName;
+    private final boolean debug;
+    private final int sampleRate;
+    /** Captured references by identity hash code of the referrer. Guarded by itself. */
+    private final Map<Integer, List<Reference>> references;
+    private final Cleaner.Cleanable cleanable;
+
+    /**
+     * Creates the counter for <code>owner</code>, which holds the first
+     * reference.
+     *
+     * @param owner      the stream whose references are counted. It is not
+     *                   referenced strongly by the counter.
+     * @param debug      whether to capture every reference and check for
+     *                   misuse.
+     * @param sampleRate capture the stack of 1 in <code>sampleRate</code>
+     *                   references, or none if 0.
+     */
+    ReferenceCounter(Object owner, boolean debug, int sampleRate) {
+        if (sampleRate < 0)
+            throw new IllegalArgumentException("sampleRate is negative: " + sampleRate);
+
+        this.ownerName = owner.getClass().getName() + "@" + Util.toHexStringBE(System.identityHashCode(owner));
+        this.debug = debug;
+        this.sampleRate = debug ? 1 : sampleRate;
+        this.references = this.sampleRate != 0 ? new HashMap<>() : null;
+
+        capture(owner);
+        this.cleanable = CLEANER.register(owner, this);
+    }
+
+    /** Returns the current number of references. */
+    long getCount() {
+        return state & COUNT_MASK;
+    }
+
+    /** Returns whether the owner has been closed. */
+    boolean isClosed() {
+        return (state & CLOSED) != 0;
+    }
+
+    /**
+     * Adds a reference held by <code>referrer</code>.
+     *
+     * @throws RuntimeIOException if the owner has been closed.
+     */
+    void add(Object referrer) {
+        if (debug && find(referrer, false) != null) {
+            throw new IllegalStateException("Only one reference per referrer is allowed.");
+        }
+
+        long current;
+        do {
+            current = state;
+            if ((current & CLOSED) != 0)
+                throw new RuntimeIOException("Stream is closed!");
+        } while (!STATE.compareAndSet(this, current, current + 1));
+
+        logger.log(Level.DEBUG, ownerName + ": Reference added (" + (current & COUNT_MASK) + " " +
+                "-> " + ((current & COUNT_MASK) + 1) + ") by " + referrer + ".");
+
+        capture(referrer);
+    }
+
+    /**
+     * Removes the reference held by <code>referrer</code>.
+     *
+     * @return whether this was the last reference, i.e. the owner should now
+     * close its underlying stream.
+     */
+    boolean remove(Object referrer) {
+        if (debug && find(referrer, false) == null) {
+            throw new RuntimeException("Reference not found!");
+        }
+
+        long current;
+        do {
+            current = state;
+            long count = current & COUNT_MASK;
+            boolean closed = (current & CLOSED) != 0;
+            if ((closed && count == 0) || (!closed && count == 1)) {
+                throw new RuntimeException("No references!");
+            }
+        } while (!STATE.compareAndSet(this, current, current - 1));
+
+        logger.log(Level.DEBUG, ownerName + ": Reference removed (" + (current & COUNT_MASK) + " " +
+                "-> " + ((current & COUNT_MASK) - 1) + ") by " + referrer + ".");
+
+        find(referrer, true);
+        return released(current - 1);
+    }
+
+    /**
+     * Drops the owner's own reference and marks it closed.
+     *
+     * @return whether this was the last reference, i.e. the owner should now
+     * close its underlying stream.
+     * @throws IllegalStateException if the owner was already closed.
+     */
+    boolean close(Object owner) {
+        if (debug && !isClosed() && find(owner, false) == null) {
+            throw new IllegalStateException("Own reference not found!");
+        }
+
+        long current;
+        do {
+            current = state;
+            if ((current & CLOSED) != 0) {
+                throw new IllegalStateException("Already closed.");
+            }
+        } while (!STATE.compareAndSet(this, current, (current - 1) | CLOSED));
+
+        find(owner, true);
+        return released((current - 1) | CLOSED);
+    }
+
+    private boolean released(long newState) {
+        if ((newState & COUNT_MASK) != 0)
+            return false;
+
+        // Nothing left to leak, so there is no need to keep the owner registered.
+        cleanable.clean();
+        return true;
+    }
+
+    private void capture(Object referrer) {
+        if (sampleRate == 0)
+            return;
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)
+            return;
+
+        Reference reference = new Reference(referrer, new Exception().getStackTrace());
+        synchronized (references) {
+            references.computeIfAbsent(System.identityHashCode(referrer), k -> new ArrayList<>(1)).add(reference);
+        }
+    }
+
+    private Reference find(Object referrer, boolean remove) {
+        if (references == null)
+            return null;
+
+        synchronized (references) {
+            int key = System.identityHashCode(referrer);
+            List<Reference> candidates = references.get(key);
+            if (candidates == null)
+                return null;
+
+            for (Iterator<Reference> it = candidates.iterator(); it.hasNext(); ) {
+                Reference reference = it.next();
+                if (reference.referrer.get() == referrer) {
+                    if (remove) {
+                        it.remove();
+                        if (candidates.isEmpty())
+                            references.remove(key);
+                    }
+                    return reference;
+                }
+            }
+            return null;
+        }
+    }
+
+    /** Invoked by the cleaner, either when the owner is unreachable or when the last reference is gone. */
+    @Override
+    public void run() {
+        long count = getCount();
+        if (count == 0)
+            return;
+
+        logger.log(Level.WARNING, ownerName + " was garbage collected with " + count +
+                " remaining references" + (references != null ? ":" : "."));
+        if (references != null) {
+            synchronized (references) {
+                for (List<Reference> candidates : references.values()) {
+                    for (Reference r : candidates) {
+                        StringBuilder sb = new StringBuilder(r.referrerName);
+                        for (StackTraceElement ste : r.stackTrace) {
+                            sb.append("\n\t").append(ste);
+                        }
+                        logger.log(Level.WARNING, sb.toString());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A captured reference. The referrer is only weakly referenced, since it
+     * usually refers to the owner and would otherwise keep it reachable.
+     */
+    private static class Reference {
+
+        final WeakReference<Object> referrer;
+        final String referrerName;
+        final StackTraceElement[] stackTrace;
+
+        Reference(Object referrer, StackTraceElement[] stackTrace) {
+            this.referrer = new WeakReference<>(referrer);
+            this.referrerName = referrer.getClass().getName() + "@" +
+                    Util.toHexStringBE(System.identityHashCode(referrer));
+            this.stackTrace = stackTrace;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Counters and latency histograms for the calls made through a metered
+ * stream ({@link MeteredReadableRandomAccessStream} or
+ * {@link MeteredRandomAccessStream}). All counters are {@link LongAdder}s, so
+ * recording adds little overhead even when many threads share one instance.
+ * <p>
+ * Metrics may have a parent, which everything recorded in the child is also
+ * recorded in. This is how {@link StreamMetricsRegistry} aggregates the
+ * metrics of all streams registered under the same name.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public final class StreamMetrics {
+
+    private final StreamMetrics parent;
+
+    private final LongAdder readCalls = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder shortReads = new LongAdder();
+    private final LongAdder writeCalls = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder seekCalls = new LongAdder();
+    private final LongAdder seekDistance = new LongAdder();
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+
+    public StreamMetrics() {
+        this(null);
+    }
+
+    /**
+     * Creates new metrics that also record everything in <code>parent</code>,
+     * unless it is <code>null</code>.
+     */
+    public StreamMetrics(StreamMetrics parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Records a read call that asked for <code>requested</code> bytes and
+     * returned <code>result</code>. A read returning fewer bytes than
+     * requested (including end of stream) counts as a short read.
+     */
+    void recordRead(int requested, int result, long nanos) {
+        readCalls.increment();
+        if (result > 0)
+            bytesRead.add(result);
+        if (result < requested)
+            shortReads.increment();
+        readLatency.record(nanos);
+
+        if (parent != null)
+            parent.recordRead(requested, result, nanos);
+    }
+
+    void recordWrite(int length, long nanos) {
+        writeCalls.increment();
+        bytesWritten.add(length);
+        writeLatency.record(nanos);
+
+        if (parent != null)
+            parent.recordWrite(length, nanos);
+    }
+
+    /** Records a seek that moved the file pointer <code>distance</code> bytes (in either direction). */
+    void recordSeek(long distance) {
+        seekCalls.increment();
+        seekDistance.add(Math.abs(distance));
+
+        if (parent != null)
+            parent.recordSeek(distance);
+    }
+
+    /**
+     * Returns the current values of all counters. Calls recorded while the
+     * snapshot is taken may be partially included.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /** The values of a StreamMetrics at one point in time. */
+    public static final class Snapshot {
+
+        private final long readCalls;
+        private final long bytesRead;
+        private final long shortReads;
+        private final long writeCalls;
+        private final long bytesWritten;
+        private final long seekCalls;
+        private final long seekDistance;
+        private final LatencyHistogram.Snapshot readLatency;
+        private final LatencyHistogram.Snapshot writeLatency;
+
+        private Snapshot(StreamMetrics metrics) {
+            this.readCalls = metrics.readCalls.sum();
+            this.bytesRead = metrics.bytesRead.sum();
+            this.shortReads = metrics.shortReads.sum();
+            this.writeCalls = metrics.writeCalls.sum();
+            this.bytesWritten = metrics.bytesWritten.sum();
+            this.seekCalls = metrics.seekCalls.sum();
+            this.seekDistance = metrics.seekDistance.sum();
+            this.readLatency = metrics.readLatency.snapshot();
+            this.writeLatency = metrics.writeLatency.snapshot();
+        }
+
+        /** Returns the number of read calls, positional or not. */
+        public long getReadCalls() {
+            return readCalls;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /** Returns the number of reads that returned fewer bytes than requested. */
+        public long getShortReads() {
+            return shortReads;
+        }
+
+        public long getWriteCalls() {
+            return writeCalls;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        public long getSeekCalls() {
+            return seekCalls;
+        }
+
+        /** Returns the sum of the distances that the file pointer was moved by seeks. */
+        public long getSeekDistance() {
+            return seekDistance;
+        }
+
+        public LatencyHistogram.Snapshot getReadLatency() {
+            return readLatency;
+        }
+
+        public LatencyHistogram.Snapshot getWriteLatency() {
+            return writeLatency;
+        }
+
+        @Override
+        public String toString() {
+            return "reads=" + readCalls + " (" + bytesRead + " bytes, " + shortReads + " short; " + readLatency +
+                    "), writes=" + writeCalls + " (" + bytesWritten + " bytes; " + writeLatency +
+                    "), seeks=" + seekCalls + " (" + seekDistance + " bytes)";
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * A process-wide registry of named {@link StreamMetrics}. Metered streams
+ * created with a name record into metrics of their own as well as into the
+ * registry's metrics for that name, so the registry shows the totals of
+ * each layer of a stack of streams (e.g. "substream", "concatenated",
+ * "file") across all instances.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public final class StreamMetricsRegistry {
+
+    private static final Map<String, StreamMetrics> metrics = new ConcurrentHashMap<>();
+
+    private StreamMetricsRegistry() {
+    }
+
+    /** Returns the metrics registered under <code>name</code>, creating them if needed. */
+    public static StreamMetrics getMetrics(String name) {
+        return metrics.computeIfAbsent(name, k -> new StreamMetrics());
+    }
+
+    /** Returns snapshots of all registered metrics, sorted by name. */
+    public static Map<String, StreamMetrics.Snapshot> snapshot() {
+        Map<String, StreamMetrics.Snapshot> result = new TreeMap<>();
+        metrics.forEach((name, m) -> result.put(name, m.snapshot()));
+        return result;
+    }
+
+    /** Removes the metrics registered under <code>name</code>. Streams using them keep recording into them. */
+    public static void remove(String name) {
+        metrics.remove(name);
+    }
+
+    /** Removes all registered metrics. */
+    public static void clear() {
+        metrics.clear();
+    }
+}
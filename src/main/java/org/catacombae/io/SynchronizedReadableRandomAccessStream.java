@@ -20,8 +20,13 @@ package org.catacombae.io;
 
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
 
+import org.catacombae.io.jfr.StreamReadEvent;
+import org.catacombae.io.jfr.StreamSeekEvent;
+import org.catacombae.util.IOUtil;
 import org.catacombae.util.Util;
 
 import static java.lang.System.getLogger;
@@ -30,13 +35,31 @@ import static java.lang.System.getLogger;
 /**
  * This class adds concurrency safety to a random access stream. It includes a
  * seek+read atomic operation. All operations on this object is synchronized on
- * its own monitor.
+ * its own monitor, except for positional reads when the underlying stream is
+ * {@link PositionalReadable}. Those are handed straight to the underlying
+ * stream so that readers of different substreams don't serialize on the lock.
+ * <p>
+ * Closing the underlying stream, when the last reference is removed, takes the
+ * monitor and so waits for the operations that hold it. It does not wait for
+ * the unlocked positional, vectored, transfer and asynchronous reads, nor for
+ * advice. If such a read races with the final close it may fail with a
+ * {@link RuntimeIOException} from the closed underlying stream. Readers must
+ * therefore hold a reference for as long as they read, or use
+ * {@link ConcurrentReadableRandomAccessStream}, whose close waits for all
+ * reads in flight.
+ * <p>
+ * References are counted without locking, and a stream that is garbage
+ * collected with remaining references is reported as a leak. Setting the
+ * system property
+ * <code>org.catacombae.io.SynchronizedReadableRandomAccessStream.references_sample_rate</code>
+ * to N captures the stack of 1 in N references for the report.
  *
  * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
  */
 public class SynchronizedReadableRandomAccessStream
         extends BasicSynchronizedReadableRandomAccessStream
-        implements SynchronizedReadableRandomAccess {
+        implements SynchronizedReadableRandomAccess, PositionalReadable, TransferableReadable,
+        VectoredReadable, AsyncReadableRandomAccess, AdvisableRandomAccess {
 
     private static final Logger logger = getLogger(SynchronizedReadableRandomAccessStream.class.getName());
 
@@ -46,22 +69,23 @@ public class SynchronizedReadableRandomAccessStream
                             SynchronizedReadableRandomAccessStream.class.getSimpleName() +
                             ".references_debug");
 
+    /**
+     * Capture the stack of 1 in this many references, so that leaked
+     * references can be traced. 0 disables capturing.
+     */
+    private static final int REFERENCES_SAMPLE_RATE =
+            Integer.getInteger("org.catacombae.io." +
+                    SynchronizedReadableRandomAccessStream.class.getSimpleName() +
+                    ".references_sample_rate", 0);
+
     /** The underlying stream. */
     private final ReadableRandomAccessStream ras;
-    private long refCount;
-    private boolean closed = false;
-    private final HashMap<Object, Reference> references =
-            REFERENCES_DEBUG ? new HashMap<>() : null;
+    private final ReferenceCounter referenceCounter;
 
     public SynchronizedReadableRandomAccessStream(
             ReadableRandomAccessStream sourceStream) {
         this.ras = sourceStream;
-        this.refCount = 1;
-
-        if (REFERENCES_DEBUG) {
-            references.put(this, new Reference(this,
-                    new Exception().getStackTrace()));
-        }
+        this.referenceCounter = new ReferenceCounter(this, REFERENCES_DEBUG, REFERENCES_SAMPLE_RATE);
     }
 
     /**
@@ -76,39 +100,146 @@ public class SynchronizedReadableRandomAccessStream
     }
 
     @Override
-    public synchronized int readFrom(long pos, byte[] b, int off, int len) throws RuntimeIOException {
+    public int readFrom(long pos, byte[] b, int off, int len) throws RuntimeIOException {
         logger.log(Level.DEBUG, "SynchronizedReadableRandomAccessStream.readFrom(" + pos +
                 ", byte[" + b.length + "], " + off + ", " + len + ");");
 
-        long oldFP = getFilePointer();
+        StreamReadEvent event = new StreamReadEvent();
+        event.begin();
+        int res = ras instanceof PositionalReadable ? ((PositionalReadable) ras).readAt(pos, b, off, len) :
+                lockedReadFrom(pos, b, off, len);
+        event.commit(this, pos, len, res);
+        return res;
+    }
 
-        logger.log(Level.DEBUG, "  oldFP=" + oldFP);
+    private int lockedReadFrom(long pos, byte[] b, int off, int len) {
+        synchronized (this) {
+            long oldFP = getFilePointer();
 
-        if (oldFP != pos) {
-            logger.log(Level.DEBUG, "  seeking to " + pos + "...");
+            logger.log(Level.DEBUG, "  oldFP=" + oldFP);
 
-            seek(pos);
-        }
+            if (oldFP != pos) {
+                logger.log(Level.DEBUG, "  seeking to " + pos + "...");
+
+                ras.seek(pos);
+            }
 
-        int res;
+            int res;
 
-        try {
-            logger.log(Level.DEBUG, "  Reading " + len + " bytes...");
+            try {
+                logger.log(Level.DEBUG, "  Reading " + len + " bytes...");
 
-            res = read(b, off, len);
+                res = ras.read(b, off, len);
 
-            logger.log(Level.DEBUG, "    read " + res + " bytes.");
-        } finally {
-            logger.log(Level.DEBUG, "  seeking to " + oldFP + "...");
+                logger.log(Level.DEBUG, "    read " + res + " bytes.");
+            } finally {
+                logger.log(Level.DEBUG, "  seeking to " + oldFP + "...");
 
-            seek(oldFP); // Reset file pointer to previous position
+                ras.seek(oldFP); // Reset file pointer to previous position
+            }
+
+            logger.log(Level.DEBUG, "  returning " + res + ".");
+
+            return res;
         }
+    }
 
-        logger.log(Level.DEBUG, "  returning " + res + ".");
+    @Override
+    public int readAt(long pos, byte[] b, int off, int len) throws RuntimeIOException {
+        return readFrom(pos, b, off, len);
+    }
 
+    @Override
+    public int readAt(long pos, ByteBuffer dst) throws RuntimeIOException {
+        StreamReadEvent event = new StreamReadEvent();
+        event.begin();
+        int requested = dst.remaining();
+        int res = ras instanceof PositionalReadable ? ((PositionalReadable) ras).readAt(pos, dst) :
+                lockedReadAt(pos, dst);
+        event.commit(this, pos, requested, res);
         return res;
     }
 
+    private int lockedReadAt(long pos, ByteBuffer dst) {
+        synchronized (this) {
+            long oldFP = getFilePointer();
+            if (oldFP != pos) {
+                ras.seek(pos);
+            }
+
+            try {
+                return ras.read(dst);
+            } finally {
+                ras.seek(oldFP);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the underlying stream is {@link PositionalReadable} or
+     * {@link VectoredReadable} the batch is read without locking, otherwise
+     * the lock is taken once for the whole batch rather than once per request.
+     */
+    @Override
+    public void readFullyAt(long[] positions, byte[][] buffers, int[] offsets, int[] lengths)
+            throws RuntimeIOException {
+        if (ras instanceof PositionalReadable || ras instanceof VectoredReadable) {
+            IOUtil.readFullyAt(ras, positions, buffers, offsets, lengths);
+            return;
+        }
+
+        synchronized (this) {
+            IOUtil.readFullyAt(ras, positions, buffers, offsets, lengths);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Like positional reads, transfers are forwarded to the underlying stream
+     * without locking if it is {@link TransferableReadable}.
+     */
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws RuntimeIOException {
+        if (ras instanceof TransferableReadable) {
+            return ((TransferableReadable) ras).transferTo(position, count, target);
+        }
+
+        synchronized (this) {
+            return IOUtil.transferTo(ras, position, count, target);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the underlying stream is {@link AsyncReadableRandomAccess} the read
+     * is forwarded to it without locking. Otherwise it is performed with
+     * {@link #readAt(long, ByteBuffer)} with
+     * {@link IOUtil#readAtAsync(PositionalReadable, long, ByteBuffer, java.util.concurrent.Executor)},
+     * blocking one of its shared threads until the read has finished.
+     */
+    @Override
+    public CompletableFuture<Integer> readAsync(long pos, ByteBuffer dst) {
+        if (ras instanceof AsyncReadableRandomAccess) {
+            return ((AsyncReadableRandomAccess) ras).readAsync(pos, dst);
+        }
+
+        return IOUtil.readAtAsync(this, pos, dst, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The advice is forwarded to the underlying stream without locking.
+     */
+    @Override
+    public void advise(long pos, long length, AccessHint hint) throws RuntimeIOException {
+        IOUtil.advise(ras, pos, length, hint);
+    }
+
     @Override
     public synchronized long skipFrom(long pos, long length) throws RuntimeIOException {
         long streamLength = length();
@@ -132,30 +263,22 @@ public class SynchronizedReadableRandomAccessStream
     }
 
     @Override
-    public synchronized void close() throws RuntimeIOException {
+    public void close() throws RuntimeIOException {
         logger.log(Level.DEBUG, SynchronizedReadableRandomAccessStream.class.getName() +
                 "@" + Util.toHexStringBE(hashCode()) + ".close(): Called " +
                 "from " + new Exception().getStackTrace()[1] + ".");
 
-        if (closed) {
-            throw new IllegalStateException("Already closed.");
+        if (referenceCounter.close(this)) {
+            closeSource();
         }
-
-        if (REFERENCES_DEBUG) {
-            if (references.remove(this) == null) {
-                throw new IllegalStateException("Own reference not found!");
-            }
-        }
-
-        --refCount;
-        tryCloseSource();
-        closed = true;
     }
 
-    private void tryCloseSource() {
-        if (refCount == 0) {
-            ras.close();
-        }
+    /**
+     * Closes the underlying stream once the operations holding the monitor
+     * have finished. Reads that bypass the monitor are not waited for.
+     */
+    private synchronized void closeSource() {
+        ras.close();
     }
 
     @Override
@@ -169,97 +292,77 @@ public class SynchronizedReadableRandomAccessStream
     }
 
     @Override
-    public synchronized int read() throws RuntimeIOException {
-        return ras.read();
+    public int read() throws RuntimeIOException {
+        StreamReadEvent event = new StreamReadEvent();
+        event.begin();
+        synchronized (this) {
+            long pos = event.isEnabled() ? ras.getFilePointer() : 0;
+            int res = ras.read();
+            event.commit(this, pos, 1, res < 0 ? -1 : 1);
+            return res;
+        }
     }
 
     @Override
-    public synchronized int read(byte[] b) throws RuntimeIOException {
-        return ras.read(b);
+    public int read(byte[] b) throws RuntimeIOException {
+        StreamReadEvent event = new StreamReadEvent();
+        event.begin();
+        synchronized (this) {
+            long pos = event.isEnabled() ? ras.getFilePointer() : 0;
+            int res = ras.read(b);
+            event.commit(this, pos, b.length, res);
+            return res;
+        }
     }
 
     @Override
-    public synchronized int read(byte[] b, int off, int len) throws RuntimeIOException {
+    public int read(byte[] b, int off, int len) throws RuntimeIOException {
         logger.log(Level.DEBUG, "SynchronizedReadableRandomAccessStream.read(" +
                 "byte[" + b.length + "], " + off + ", " + len + ");");
         logger.log(Level.DEBUG, "  ras=" + ras);
 
-        return ras.read(b, off, len);
-    }
-
-    @Override
-    public synchronized void seek(long pos) throws RuntimeIOException {
-        ras.seek(pos);
+        StreamReadEvent event = new StreamReadEvent();
+        event.begin();
+        synchronized (this) {
+            long pos = event.isEnabled() ? ras.getFilePointer() : 0;
+            int res = ras.read(b, off, len);
+            event.commit(this, pos, len, res);
+            return res;
+        }
     }
 
     @Override
-    public synchronized void addReference(Object referrer) {
-        logger.log(Level.DEBUG, this + ": Reference added (" + refCount + " " +
-                "-> " + (refCount + 1) + ") by " + referrer + ".");
-
-        if (!closed) {
-            if (REFERENCES_DEBUG) {
-                if (references.get(referrer) != null) {
-                    throw new IllegalStateException("Only one reference per referrer is allowed.");
-                }
-
-                references.put(referrer, new Reference(referrer, new Exception().getStackTrace()));
-            }
-
-            ++refCount;
-        } else
-            throw new RuntimeIOException("Stream is closed!");
+    public int read(ByteBuffer dst) throws RuntimeIOException {
+        StreamReadEvent event = new StreamReadEvent();
+        event.begin();
+        int requested = dst.remaining();
+        synchronized (this) {
+            long pos = event.isEnabled() ? ras.getFilePointer() : 0;
+            int res = ras.read(dst);
+            event.commit(this, pos, requested, res);
+            return res;
+        }
     }
 
     @Override
-    public synchronized void removeReference(Object referrer) {
-        if ((closed && refCount == 0) || (!closed && refCount == 1)) {
-            throw new RuntimeException("No references!");
-        }
-
-        logger.log(Level.DEBUG, this + ": Reference removed (" + refCount + " " +
-                "-> " + (refCount - 1) + ") by " + referrer + ".");
-
-        if (REFERENCES_DEBUG) {
-            if (references.remove(referrer) == null) {
-                throw new RuntimeException("Reference not found!");
-            }
+    public void seek(long pos) throws RuntimeIOException {
+        StreamSeekEvent event = new StreamSeekEvent();
+        event.begin();
+        synchronized (this) {
+            ras.seek(pos);
         }
-
-        --refCount;
-
-        tryCloseSource();
+        event.commit(this, pos);
     }
 
     @Override
-    protected synchronized void finalize() throws Throwable {
-        try {
-            if (refCount != 0) {
-                logger.log(Level.DEBUG, "[WARNING] " + this + " is garbage " +
-                        "collected with " + refCount + " remaining references" +
-                        (REFERENCES_DEBUG ? ":" : "."));
-                if (REFERENCES_DEBUG) {
-                    for (Reference r : references.values()) {
-                        logger.log(Level.DEBUG, r.referrer);
-                        for (StackTraceElement ste : r.stackTrace) {
-                            logger.log(Level.DEBUG, "\t" + ste);
-                        }
-                    }
-                }
-            }
-        } finally {
-            super.finalize();
-        }
+    public void addReference(Object referrer) {
+        referenceCounter.add(referrer);
     }
 
-    private static class Reference {
-
-        final Object referrer;
-        final StackTraceElement[] stackTrace;
-
-        public Reference(Object referrer, StackTraceElement[] stackTrace) {
-            this.referrer = referrer;
-            this.stackTrace = stackTrace;
+    @Override
+    public void removeReference(Object referrer) {
+        if (referenceCounter.remove(referrer)) {
+            closeSource();
         }
     }
 }
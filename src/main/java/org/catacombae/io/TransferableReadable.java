@@ -0,0 +1,53 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * Defines transfers from a stream directly into a channel. Implementations
+ * backed by a FileChannel let the operating system move the data (sendfile,
+ * copy_file_range) instead of copying it through a byte array in the Java
+ * heap.
+ * <p>
+ * Like positional reads, transfers neither consult nor change the file
+ * pointer of the stream.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ * @see org.catacombae.util.IOUtil#transferTo(ReadableRandomAccessStream, long, long, WritableByteChannel)
+ */
+public interface TransferableReadable {
+
+    /**
+     * Transfers up to <code>count</code> bytes starting at byte position
+     * <code>position</code> of the stream to <code>target</code>. Fewer bytes
+     * are transferred only if the end of the stream is reached, or if
+     * <code>target</code> is in non-blocking mode and can't accept more bytes.
+     * Does <b>not</b> change the file pointer of the stream.
+     *
+     * @param position the position in the stream where the transfer should
+     *                 start.
+     * @param count    the maximum number of bytes to transfer.
+     * @param target   the channel to write the data to.
+     * @return the number of bytes that were transferred, possibly 0.
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred.
+     */
+    long transferTo(long position, long count, WritableByteChannel target) throws RuntimeIOException;
+}
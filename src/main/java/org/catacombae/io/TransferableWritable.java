@@ -0,0 +1,50 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+import java.nio.channels.ReadableByteChannel;
+
+
+/**
+ * Defines transfers from a channel directly into a stream. This is the
+ * counterpart of {@link TransferableReadable}.
+ * <p>
+ * Transfers neither consult nor change the file pointer of the stream.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ * @see org.catacombae.util.IOUtil#transferFrom(RandomAccessStream, ReadableByteChannel, long, long)
+ */
+public interface TransferableWritable {
+
+    /**
+     * Transfers up to <code>count</code> bytes from <code>src</code> into the
+     * stream, starting at byte position <code>position</code>. Fewer bytes are
+     * transferred only if <code>src</code> reaches end of stream, or if it is
+     * in non-blocking mode and has no more bytes immediately available. Does
+     * <b>not</b> change the file pointer of the stream.
+     *
+     * @param src      the channel to read the data from.
+     * @param position the position in the stream where the transfer should
+     *                 start.
+     * @param count    the maximum number of bytes to transfer.
+     * @return the number of bytes that were transferred, possibly 0.
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred.
+     */
+    long transferFrom(ReadableByteChannel src, long position, long count) throws RuntimeIOException;
+}
@@ -0,0 +1,53 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io;
+
+
+/**
+ * Defines vectored reads, i.e. batches of positional reads that are issued
+ * together so that the implementation can sort them, merge adjacent or
+ * overlapping ranges and serve the whole batch with as few underlying reads
+ * (and as little locking) as possible.
+ * <p>
+ * Like {@link PositionalReadable#readAt(long, byte[], int, int)}, vectored
+ * reads neither consult nor change the file pointer of the stream.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ * @see org.catacombae.util.IOUtil#readFullyAt(ReadableRandomAccessStream, long[], byte[][], int[], int[])
+ */
+public interface VectoredReadable {
+
+    /**
+     * Reads <code>lengths[i]</code> bytes from byte position
+     * <code>positions[i]</code> of the stream into <code>buffers[i]</code> at
+     * position <code>offsets[i]</code>, for every <code>i</code>. The requests
+     * may be given in any order and may overlap. Does <b>not</b> change the
+     * file pointer of the stream.
+     *
+     * @param positions the positions in the stream where each read should
+     *                  start.
+     * @param buffers   the arrays where the output data should be stored.
+     * @param offsets   the start positions in the arrays where data should be
+     *                  stored.
+     * @param lengths   the number of bytes to read for each request.
+     * @throws org.catacombae.io.RuntimeIOException if the stream doesn't contain
+     *                                              enough data to fill all requests, or if an I/O error occurred.
+     */
+    void readFullyAt(long[] positions, byte[][] buffers, int[] offsets, int[] lengths) throws RuntimeIOException;
+}
@@ -18,6 +18,9 @@
 
 package org.catacombae.io;
 
+import java.nio.ByteBuffer;
+
+
 /**
  * This interface defines the methods that must exist for a stream to be writable.
  *
@@ -42,6 +45,20 @@ public interface Writable {
      */
     void write(byte[] data, int off, int len) throws RuntimeIOException;
 
+    /**
+     * Writes all remaining bytes of <code>src</code> to the stream, at its current position. The
+     * position of <code>src</code> is advanced to its limit.
+     * <p>
+     * The default implementation writes the backing array of heap buffers with
+     * {@link #write(byte[], int, int)}, and copies through a temporary array
+     * otherwise.
+     *
+     * @param src buffer containing the data to write to the stream.
+     */
+    default void write(ByteBuffer src) throws RuntimeIOException {
+        BasicWritable.defaultWrite(this, src);
+    }
+
     /**
      * Writes a single byte to the stream. <code>data</code> will be unsigned first, so valid ranges
      * are <code>0 &lt;= data &lt;= 255</code> or <code>-128 &lt;= data &lt;= 127</code>.
@@ -0,0 +1,59 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+
+/**
+ * A block read ahead of a sequential reader.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+@Name("org.catacombae.io.Prefetch")
+@Label("Prefetch")
+@Description("A block read ahead of a sequential reader")
+@Threshold("1 ms")
+public final class PrefetchEvent extends StreamEvent {
+
+    @Label("Bytes Read")
+    @Description("The number of bytes that were prefetched")
+    @DataAmount
+    private long bytesRead;
+
+    /**
+     * Ends the event and commits it if it is enabled and lasted longer than
+     * its threshold.
+     *
+     * @param stream    the read-ahead stream.
+     * @param position  the position of the prefetched block.
+     * @param length    the length of the prefetched block.
+     * @param bytesRead the number of bytes that were prefetched.
+     */
+    public void commit(Object stream, long position, long length, long bytesRead) {
+        if (end(stream, position, length)) {
+            this.bytesRead = bytesRead;
+            commit();
+        }
+    }
+}
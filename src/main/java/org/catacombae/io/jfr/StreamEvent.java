@@ -0,0 +1,75 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+import org.catacombae.io.AbstractFileStream;
+
+
+/**
+ * Common fields of the stream events: which stream the operation was done on
+ * and which range of it was affected.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+@Category({"Catacombae", "I/O"})
+@StackTrace(false)
+abstract class StreamEvent extends Event {
+
+    // The fields aren't private, since JFR doesn't record private fields of superclasses.
+
+    @Label("Stream")
+    @Description("Class and identity hash code of the stream")
+    String stream;
+
+    @Label("Path")
+    @Description("Path of the file, for file streams")
+    String path;
+
+    @Label("Position")
+    long position;
+
+    @Label("Length")
+    @Description("Number of bytes requested")
+    @DataAmount
+    long length;
+
+    /**
+     * Ends the event and returns whether it should be committed, in which
+     * case the common fields are set from the arguments.
+     */
+    boolean end(Object stream, long position, long length) {
+        end();
+        if (!shouldCommit())
+            return false;
+
+        this.stream = stream.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(stream));
+        if (stream instanceof AbstractFileStream)
+            this.path = ((AbstractFileStream) stream).getOpenPath();
+        this.position = position;
+        this.length = length;
+        return true;
+    }
+}
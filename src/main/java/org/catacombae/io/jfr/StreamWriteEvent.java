@@ -0,0 +1,50 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.io.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+
+/**
+ * A write to a stream.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+@Name("org.catacombae.io.Write")
+@Label("Stream Write")
+@Description("A write to a stream")
+@Threshold("10 ms")
+public final class StreamWriteEvent extends StreamEvent {
+
+    /**
+     * Ends the event and commits it if it is enabled and lasted longer than
+     * its threshold.
+     *
+     * @param stream   the stream.
+     * @param position the position of the first byte written to.
+     * @param length   the number of bytes written to.
+     */
+    public void commit(Object stream, long position, long length) {
+        if (end(stream, position, length))
+            commit();
+    }
+}
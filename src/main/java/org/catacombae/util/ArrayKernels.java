@@ -0,0 +1,204 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.util;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Bulk decoders and byte swaps for primitive arrays, writing into arrays
+ * supplied by the caller instead of allocating new ones like the
+ * corresponding methods in {@link Util}.
+ * <p>
+ * The implementation is chosen when this class is initialized. If the
+ * <code>jdk.incubator.vector</code> module is present (<code>java
+ * --add-modules jdk.incubator.vector</code>) whole vectors of elements are
+ * decoded at a time with the Vector API, otherwise each element is read
+ * through a {@link java.lang.invoke.VarHandle} byte array view. Setting the
+ * system property <code>org.catacombae.util.ArrayKernels.vector</code> to
+ * <code>false</code> forces the latter.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public final class ArrayKernels {
+
+    private static final Logger logger = getLogger(ArrayKernels.class.getName());
+
+    private static final VarHandleArrayKernels kernels = createKernels();
+
+    private ArrayKernels() {
+    }
+
+    private static VarHandleArrayKernels createKernels() {
+        VarHandleArrayKernels fallback = new VarHandleArrayKernels();
+        if (Util.booleanEnabledByProperties(true, "org.catacombae.util.ArrayKernels.vector")) {
+            try {
+                VarHandleArrayKernels vector = (VarHandleArrayKernels)
+                        Class.forName("org.catacombae.util.VectorArrayKernels").getDeclaredConstructor().newInstance();
+                // The incubating API changes between releases; make sure this one still works.
+                if (agree(vector, fallback)) {
+                    logger.log(Level.DEBUG, "Using " + vector.getName() + " array kernels.");
+                    return vector;
+                }
+                logger.log(Level.WARNING, "Vector API array kernels are broken, using " + fallback.getName() + ".");
+            } catch (ReflectiveOperationException | LinkageError e) {
+                logger.log(Level.DEBUG, "Vector API not available: " + e);
+            }
+        }
+        return fallback;
+    }
+
+    /** Returns whether <code>a</code> and <code>b</code> give the same results on a sample. */
+    private static boolean agree(VarHandleArrayKernels a, VarHandleArrayKernels b) {
+        byte[] src = new byte[1027];
+        for (int i = 0; i < src.length; ++i)
+            src[i] = (byte) (i * 31 + 7);
+        int count = (src.length - 3) / 8;
+
+        long[] la = new long[count], lb = new long[count];
+        a.readLongArrayLE(src, 3, la, 0, count);
+        b.readLongArrayLE(src, 3, lb, 0, count);
+        a.byteSwap(la, 0, count);
+        b.byteSwap(lb, 0, count);
+
+        int[] ia = new int[count * 2], ib = new int[count * 2];
+        a.readIntArrayBE(src, 1, ia, 0, count * 2);
+        b.readIntArrayBE(src, 1, ib, 0, count * 2);
+
+        char[] ca = new char[count * 4], cb = new char[count * 4];
+        a.readCharArrayLE(src, 1, ca, 0, count * 4);
+        b.readCharArrayLE(src, 1, cb, 0, count * 4);
+
+        byte[] ba = src.clone(), bb = src.clone();
+        a.byteSwap(ba, 1, ba.length - 1);
+        b.byteSwap(bb, 1, bb.length - 1);
+
+        return Arrays.equals(la, lb) && Arrays.equals(ia, ib) && Arrays.equals(ca, cb) && Arrays.equals(ba, bb);
+    }
+
+    /**
+     * Returns a description of the implementation in use, for diagnostics.
+     */
+    public static String getImplementationName() {
+        return kernels.getName();
+    }
+
+    /**
+     * Decodes <code>count</code> big endian shorts from <code>src</code>,
+     * starting at <code>srcOff</code>, into <code>dst</code>, starting at
+     * <code>dstOff</code>.
+     *
+     * @throws IndexOutOfBoundsException if either range is outside its array.
+     */
+    public static void readShortArrayBE(byte[] src, int srcOff, short[] dst, int dstOff, int count) {
+        checkRanges(src, srcOff, 2, dst.length, dstOff, count);
+        kernels.readShortArrayBE(src, srcOff, dst, dstOff, count);
+    }
+
+    /**
+     * Decodes <code>count</code> little endian chars from <code>src</code>,
+     * starting at <code>srcOff</code>, into <code>dst</code>, starting at
+     * <code>dstOff</code>.
+     *
+     * @throws IndexOutOfBoundsException if either range is outside its array.
+     */
+    public static void readCharArrayLE(byte[] src, int srcOff, char[] dst, int dstOff, int count) {
+        checkRanges(src, srcOff, 2, dst.length, dstOff, count);
+        kernels.readCharArrayLE(src, srcOff, dst, dstOff, count);
+    }
+
+    /**
+     * Decodes <code>count</code> big endian ints from <code>src</code>,
+     * starting at <code>srcOff</code>, into <code>dst</code>, starting at
+     * <code>dstOff</code>.
+     *
+     * @throws IndexOutOfBoundsException if either range is outside its array.
+     */
+    public static void readIntArrayBE(byte[] src, int srcOff, int[] dst, int dstOff, int count) {
+        checkRanges(src, srcOff, 4, dst.length, dstOff, count);
+        kernels.readIntArrayBE(src, srcOff, dst, dstOff, count);
+    }
+
+    /**
+     * Decodes <code>count</code> little endian longs from <code>src</code>,
+     * starting at <code>srcOff</code>, into <code>dst</code>, starting at
+     * <code>dstOff</code>.
+     *
+     * @throws IndexOutOfBoundsException if either range is outside its array.
+     */
+    public static void readLongArrayLE(byte[] src, int srcOff, long[] dst, int dstOff, int count) {
+        checkRanges(src, srcOff, 8, dst.length, dstOff, count);
+        kernels.readLongArrayLE(src, srcOff, dst, dstOff, count);
+    }
+
+    /**
+     * Reverses the order of the bytes in the range defined by
+     * <code>offset</code> and <code>length</code> in <code>data</code>, like
+     * {@link Util#byteSwap(byte[], int, int)}.
+     *
+     * @throws IndexOutOfBoundsException if the range is outside the array.
+     */
+    public static void byteSwap(byte[] data, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, data.length);
+        kernels.byteSwap(data, offset, length);
+    }
+
+    /**
+     * Reverses the byte order of each of the <code>length</code> shorts
+     * starting at <code>offset</code> in <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the range is outside the array.
+     */
+    public static void byteSwap(short[] data, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, data.length);
+        kernels.byteSwap(data, offset, length);
+    }
+
+    /**
+     * Reverses the byte order of each of the <code>length</code> ints
+     * starting at <code>offset</code> in <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the range is outside the array.
+     */
+    public static void byteSwap(int[] data, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, data.length);
+        kernels.byteSwap(data, offset, length);
+    }
+
+    /**
+     * Reverses the byte order of each of the <code>length</code> longs
+     * starting at <code>offset</code> in <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the range is outside the array.
+     */
+    public static void byteSwap(long[] data, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, data.length);
+        kernels.byteSwap(data, offset, length);
+    }
+
+    private static void checkRanges(byte[] src, int srcOff, int elementSize, int dstLength, int dstOff, int count) {
+        Objects.checkFromIndexSize(dstOff, count, dstLength);
+        Objects.checkFromIndexSize(srcOff, count * (long) elementSize, src.length);
+    }
+}
@@ -0,0 +1,258 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32C;
+
+import org.catacombae.io.ReadableRandomAccessStream;
+import org.catacombae.io.RuntimeIOException;
+import org.catacombae.util.ChecksumUtil.Algorithm;
+
+
+/**
+ * An index of the CRC-32C of every block of a stream, which answers the
+ * CRC-32C of any byte range of the stream without reading more than the
+ * partial blocks at its edges.
+ * <p>
+ * The index is built once with
+ * {@link #build(ReadableRandomAccessStream, int)}, and can be persisted with
+ * {@link #writeTo(OutputStream)} and loaded again with
+ * {@link #readFrom(InputStream)}. When loaded, the CRC-32C of every prefix of
+ * whole blocks is computed, so that the CRC-32C of any run of whole blocks
+ * takes a single combine operation regardless of its length.
+ * <p>
+ * The index describes the stream as it was when the index was built. It is
+ * up to the caller to make sure the stream hasn't been modified since.
+ * Instances are immutable and thread-safe.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public class BlockChecksumIndex {
+
+    /** Default size of an indexed block (64 KiB). */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /** Magic number at the start of a persisted index, "BCIX". */
+    private static final int MAGIC = 0x42434958;
+
+    private static final int VERSION = 1;
+
+    private final int blockSize;
+    private final long length;
+    /** CRC-32C of each block. */
+    private final int[] blockChecksums;
+    /** prefixChecksums[i] is the CRC-32C of the first i blocks. */
+    private final int[] prefixChecksums;
+
+    private BlockChecksumIndex(int blockSize, long length, int[] blockChecksums) {
+        this.blockSize = blockSize;
+        this.length = length;
+        this.blockChecksums = blockChecksums;
+        this.prefixChecksums = new int[blockChecksums.length + 1];
+
+        // Shifting by a whole block is the same operation for all but the last block.
+        int[] blockShift = ChecksumUtil.crcShiftOperator(ChecksumUtil.CRC32C_POLYNOMIAL, blockSize);
+        for (int i = 0; i < blockChecksums.length; ++i) {
+            long blockLength = Math.min(blockSize, length - (long) i * blockSize);
+            prefixChecksums[i + 1] = blockLength == blockSize ?
+                    ChecksumUtil.gf2MatrixTimes(blockShift, prefixChecksums[i]) ^ blockChecksums[i] :
+                    (int) ChecksumUtil.crc32cCombine(prefixChecksums[i] & 0xffff_ffffL,
+                            blockChecksums[i] & 0xffff_ffffL, blockLength);
+        }
+    }
+
+    /** Builds an index of <code>s</code> with the default block size. */
+    public static BlockChecksumIndex build(ReadableRandomAccessStream s) {
+        return build(s, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Builds an index of <code>s</code>, reading the whole stream once with
+     * one thread per available processor.
+     *
+     * @param s         the stream to index.
+     * @param blockSize the size of each indexed block in bytes. Smaller blocks
+     *                  mean less data to read at the edges of a range, but a
+     *                  larger index.
+     */
+    public static BlockChecksumIndex build(ReadableRandomAccessStream s, int blockSize) {
+        return build(s, blockSize, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Builds an index of <code>s</code>, checksumming the blocks in parallel
+     * as described in
+     * {@link ChecksumUtil#checksum(ReadableRandomAccessStream, long, long, ChecksumUtil.Algorithm, int, int, Executor)}.
+     */
+    public static BlockChecksumIndex build(ReadableRandomAccessStream s, int blockSize, int parallelism,
+                                           Executor executor) {
+        long length = s.length();
+        long[] checksums = ChecksumUtil.partialChecksums(s, 0, length, Algorithm.CRC32C, blockSize, parallelism,
+                executor);
+
+        int[] blockChecksums = new int[checksums.length];
+        for (int i = 0; i < checksums.length; ++i)
+            blockChecksums[i] = (int) checksums[i];
+        return new BlockChecksumIndex(blockSize, length, blockChecksums);
+    }
+
+    /** Returns the size of each indexed block in bytes. */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /** Returns the length of the stream that was indexed. */
+    public long getLength() {
+        return length;
+    }
+
+    /** Returns the number of indexed blocks. */
+    public int getBlockCount() {
+        return blockChecksums.length;
+    }
+
+    /** Returns the CRC-32C of block number <code>i</code>. */
+    public long getBlockChecksum(int i) {
+        return blockChecksums[i] & 0xffff_ffffL;
+    }
+
+    /**
+     * Returns the CRC-32C of <code>length</code> bytes of the indexed stream
+     * starting at <code>pos</code>. Whole blocks are taken from the index, and
+     * only the partial blocks at the edges of the range are read from
+     * <code>s</code>, which must be the indexed stream.
+     *
+     * @param s      the indexed stream.
+     * @param pos    the position in the stream where the range starts.
+     * @param length the length of the range.
+     * @return the CRC-32C, as returned by {@link CRC32C#getValue()}.
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred.
+     */
+    public long checksum(ReadableRandomAccessStream s, long pos, long length) {
+        if (pos < 0)
+            throw new IllegalArgumentException("pos is negative: " + pos);
+        if (length < 0 || pos + length > this.length)
+            throw new IllegalArgumentException("Range (" + pos + ", " + length + ") is outside of the indexed " +
+                    this.length + " bytes.");
+        if (s.length() != this.length)
+            throw new IllegalArgumentException("Stream length " + s.length() + " differs from the indexed length " +
+                    this.length + ".");
+
+        long end = pos + length;
+        long firstBlock = (pos + blockSize - 1) / blockSize;
+        // The last block is shorter than blockSize, so it is whole if the range reaches the end.
+        long endBlock = end == this.length ? blockChecksums.length : end / blockSize;
+
+        if (firstBlock >= endBlock)
+            return readChecksum(s, pos, length);
+
+        long wholeStart = firstBlock * blockSize;
+        long wholeEnd = Math.min(endBlock * blockSize, this.length);
+
+        long result = readChecksum(s, pos, wholeStart - pos);
+        long whole = ChecksumUtil.crc32cCombine(prefixChecksums[(int) firstBlock] & 0xffff_ffffL,
+                prefixChecksums[(int) endBlock] & 0xffff_ffffL, wholeEnd - wholeStart);
+        result = ChecksumUtil.crc32cCombine(result, whole, wholeEnd - wholeStart);
+        return ChecksumUtil.crc32cCombine(result, readChecksum(s, wholeEnd, end - wholeEnd), end - wholeEnd);
+    }
+
+    /** Reads a range of less than two blocks from <code>s</code> and returns its CRC-32C. */
+    private long readChecksum(ReadableRandomAccessStream s, long pos, long length) {
+        CRC32C checksum = new CRC32C();
+        if (length > 0) {
+            byte[] data = new byte[(int) length];
+            IOUtil.readFullyAt(s, pos, data, 0, data.length);
+            checksum.update(data);
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * Writes the index to <code>os</code>. The stream is not closed.
+     *
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred.
+     */
+    public void writeTo(OutputStream os) {
+        try {
+            DataOutputStream out = new DataOutputStream(os);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(blockSize);
+            out.writeLong(length);
+            out.writeInt(blockChecksums.length);
+
+            CRC32C checksum = new CRC32C();
+            byte[] entry = new byte[4];
+            for (int blockChecksum : blockChecksums) {
+                Util.arrayPutBE(entry, 0, blockChecksum);
+                checksum.update(entry);
+                out.write(entry);
+            }
+            out.writeInt((int) checksum.getValue());
+            out.flush();
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo(OutputStream)} from
+     * <code>is</code>. The stream is not closed.
+     *
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred,
+     *                                              or if the data isn't a valid index.
+     */
+    public static BlockChecksumIndex readFrom(InputStream is) {
+        try {
+            DataInputStream in = new DataInputStream(is);
+            if (in.readInt() != MAGIC)
+                throw new RuntimeIOException("Not a block checksum index.");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new RuntimeIOException("Unsupported block checksum index version: " + version);
+
+            int blockSize = in.readInt();
+            long length = in.readLong();
+            int blockCount = in.readInt();
+            if (blockSize <= 0 || length < 0 || blockCount > Integer.MAX_VALUE / 4 ||
+                    blockCount != (length + blockSize - 1) / blockSize)
+                throw new RuntimeIOException("Corrupt block checksum index header.");
+
+            CRC32C checksum = new CRC32C();
+            byte[] entries = new byte[blockCount * 4];
+            in.readFully(entries);
+            checksum.update(entries);
+            if (in.readInt() != (int) checksum.getValue())
+                throw new RuntimeIOException("Block checksum index checksum mismatch.");
+
+            int[] blockChecksums = new int[blockCount];
+            for (int i = 0; i < blockCount; ++i)
+                blockChecksums[i] = Util.readIntBE(entries, i * 4);
+            return new BlockChecksumIndex(blockSize, length, blockChecksums);
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+
+/**
+ * Reads and writes primitive values in byte arrays in either byte order
+ * without allocating. Each access goes through a
+ * {@link MethodHandles#byteArrayViewVarHandle(Class, ByteOrder)} view, which
+ * the JIT compiles to a single (possibly unaligned) load or store plus a byte
+ * swap where needed, instead of assembling the value a byte at a time.
+ * <p>
+ * The scalar codecs in {@link Util} delegate to this class.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public final class ByteArrayCodec {
+
+    private static final VarHandle SHORT_BE =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle SHORT_LE =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle CHAR_BE =
+            MethodHandles.byteArrayViewVarHandle(char[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle CHAR_LE =
+            MethodHandles.byteArrayViewVarHandle(char[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BE =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_LE =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_BE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private ByteArrayCodec() {
+    }
+
+    /**
+     * Reads a big endian short from the 2 bytes at <code>offset</code> in
+     * <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static short readShortBE(byte[] data, int offset) {
+        return (short) SHORT_BE.get(data, offset);
+    }
+
+    /**
+     * Reads a little endian short from the 2 bytes at <code>offset</code> in
+     * <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static short readShortLE(byte[] data, int offset) {
+        return (short) SHORT_LE.get(data, offset);
+    }
+
+    /**
+     * Writes <code>value</code> as a big endian short to the 2 bytes at
+     * <code>offset</code> in <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static void writeShortBE(byte[] data, int offset, short value) {
+        SHORT_BE.set(data, offset, value);
+    }
+
+    /**
+     * Writes <code>value</code> as a little endian short to the 2 bytes at
+     * <code>offset</code> in <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static void writeShortLE(byte[] data, int offset, short value) {
+        SHORT_LE.set(data, offset, value);
+    }
+
+    /**
+     * Reads a big endian char from the 2 bytes at <code>offset</code> in
+     * <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static char readCharBE(byte[] data, int offset) {
+        return (char) CHAR_BE.get(data, offset);
+    }
+
+    /**
+     * Reads a little endian char from the 2 bytes at <code>offset</code> in
+     * <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static char readCharLE(byte[] data, int offset) {
+        return (char) CHAR_LE.get(data, offset);
+    }
+
+    /**
+     * Writes <code>value</code> as a big endian char to the 2 bytes at
+     * <code>offset</code> in <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static void writeCharBE(byte[] data, int offset, char value) {
+        CHAR_BE.set(data, offset, value);
+    }
+
+    /**
+     * Writes <code>value</code> as a little endian char to the 2 bytes at
+     * <code>offset</code> in <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static void writeCharLE(byte[] data, int offset, char value) {
+        CHAR_LE.set(data, offset, value);
+    }
+
+    /**
+     * Reads a big endian int from the 4 bytes at <code>offset</code> in
+     * <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static int readIntBE(byte[] data, int offset) {
+        return (int) INT_BE.get(data, offset);
+    }
+
+    /**
+     * Reads a little endian int from the 4 bytes at <code>offset</code> in
+     * <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static int readIntLE(byte[] data, int offset) {
+        return (int) INT_LE.get(data, offset);
+    }
+
+    /**
+     * Writes <code>value</code> as a big endian int to the 4 bytes at
+     * <code>offset</code> in <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static void writeIntBE(byte[] data, int offset, int value) {
+        INT_BE.set(data, offset, value);
+    }
+
+    /**
+     * Writes <code>value</code> as a little endian int to the 4 bytes at
+     * <code>offset</code> in <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static void writeIntLE(byte[] data, int offset, int value) {
+        INT_LE.set(data, offset, value);
+    }
+
+    /**
+     * Reads a big endian long from the 8 bytes at <code>offset</code> in
+     * <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static long readLongBE(byte[] data, int offset) {
+        return (long) LONG_BE.get(data, offset);
+    }
+
+    /**
+     * Reads a little endian long from the 8 bytes at <code>offset</code> in
+     * <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static long readLongLE(byte[] data, int offset) {
+        return (long) LONG_LE.get(data, offset);
+    }
+
+    /**
+     * Writes <code>value</code> as a big endian long to the 8 bytes at
+     * <code>offset</code> in <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static void writeLongBE(byte[] data, int offset, long value) {
+        LONG_BE.set(data, offset, value);
+    }
+
+    /**
+     * Writes <code>value</code> as a little endian long to the 8 bytes at
+     * <code>offset</code> in <code>data</code>.
+     *
+     * @throws IndexOutOfBoundsException if the bytes are outside the array.
+     */
+    public static void writeLongLE(byte[] data, int offset, long value) {
+        LONG_LE.set(data, offset, value);
+    }
+}
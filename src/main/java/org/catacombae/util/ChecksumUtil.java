@@ -0,0 +1,529 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+import org.catacombae.io.ReadableRandomAccessStream;
+import org.catacombae.io.RuntimeIOException;
+
+
+/**
+ * Computes checksums and message digests of regions of streams, using more
+ * than one thread.
+ * <p>
+ * Checksums that can be combined ({@link Algorithm#CRC32},
+ * {@link Algorithm#CRC32C} and {@link Algorithm#ADLER32}) are computed by
+ * splitting the region into chunks which are read and checksummed in
+ * parallel, after which the partial results are merged with
+ * {@link #crc32Combine(long, long, long)},
+ * {@link #crc32cCombine(long, long, long)} or
+ * {@link #adler32Combine(long, long, long)}. Message digests
+ * ({@link Algorithm#MD5} and {@link Algorithm#SHA_256}) can't be split, so
+ * the region is read ahead in parallel while the calling thread does all the
+ * hashing.
+ * <p>
+ * Chunks are read with {@link IOUtil#readFullyAt(ReadableRandomAccessStream, long, byte[], int, int)},
+ * so the stream should be {@link org.catacombae.io.PositionalReadable} for
+ * the reads to actually run in parallel.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+public class ChecksumUtil {
+
+    /** Default size of the chunks that are read and hashed as a unit (4 MiB). */
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /** Number of chunks read ahead of the digest thread for message digests. */
+    private static final int PIPELINE_DEPTH = 4;
+
+    /** Reversed CRC-32 (IEEE 802.3) polynomial. */
+    private static final int CRC32_POLYNOMIAL = 0xedb88320;
+
+    /** Reversed CRC-32C (Castagnoli) polynomial. */
+    static final int CRC32C_POLYNOMIAL = 0x82f63b78;
+
+    /** Largest prime smaller than 65536, the modulus of Adler-32. */
+    private static final int ADLER32_BASE = 65521;
+
+    /** The supported checksum and digest algorithms. */
+    public enum Algorithm {
+
+        CRC32(true, null),
+        CRC32C(true, null),
+        ADLER32(true, null),
+        MD5(false, "MD5"),
+        SHA_256(false, "SHA-256");
+
+        private final boolean combinable;
+        private final String digestName;
+
+        Algorithm(boolean combinable, String digestName) {
+            this.combinable = combinable;
+            this.digestName = digestName;
+        }
+
+        /**
+         * Returns whether this is a checksum whose partial results can be
+         * combined, i.e. whether it can be computed in parallel.
+         */
+        public boolean isCombinable() {
+            return combinable;
+        }
+
+        /** Creates a checksum for this algorithm, which must be combinable. */
+        Checksum newChecksum() {
+            switch (this) {
+            case CRC32:
+                return new CRC32();
+            case CRC32C:
+                return new CRC32C();
+            case ADLER32:
+                return new Adler32();
+            default:
+                throw new IllegalArgumentException(this + " is not a checksum.");
+            }
+        }
+
+        /** Creates a message digest for this algorithm, which must not be combinable. */
+        MessageDigest newMessageDigest() {
+            if (digestName == null)
+                throw new IllegalArgumentException(this + " is not a message digest.");
+
+            try {
+                return MessageDigest.getInstance(digestName);
+            } catch (NoSuchAlgorithmException ex) {
+                // Every Java platform is required to support MD5 and SHA-256.
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        /** Combines the checksum of a sequence with that of the <code>len2</code> bytes following it. */
+        long combine(long checksum1, long checksum2, long len2) {
+            switch (this) {
+            case CRC32:
+                return crc32Combine(checksum1, checksum2, len2);
+            case CRC32C:
+                return crc32cCombine(checksum1, checksum2, len2);
+            case ADLER32:
+                return adler32Combine(checksum1, checksum2, len2);
+            default:
+                throw new IllegalArgumentException(this + " is not a checksum.");
+            }
+        }
+    }
+
+    /**
+     * Returns the CRC-32 of the concatenation of two sequences, given the
+     * CRC-32 of each and the length of the second one.
+     *
+     * @param crc1 the CRC-32 of the first sequence.
+     * @param crc2 the CRC-32 of the second sequence.
+     * @param len2 the length of the second sequence in bytes.
+     * @return the CRC-32 of the first sequence followed by the second.
+     */
+    public static long crc32Combine(long crc1, long crc2, long len2) {
+        return crcCombine(CRC32_POLYNOMIAL, crc1, crc2, len2);
+    }
+
+    /**
+     * Returns the CRC-32C of the concatenation of two sequences, given the
+     * CRC-32C of each and the length of the second one.
+     *
+     * @see #crc32Combine(long, long, long)
+     */
+    public static long crc32cCombine(long crc1, long crc2, long len2) {
+        return crcCombine(CRC32C_POLYNOMIAL, crc1, crc2, len2);
+    }
+
+    /**
+     * Returns the Adler-32 of the concatenation of two sequences, given the
+     * Adler-32 of each and the length of the second one.
+     *
+     * @see #crc32Combine(long, long, long)
+     */
+    public static long adler32Combine(long adler1, long adler2, long len2) {
+        if (len2 < 0)
+            throw new IllegalArgumentException("len2 is negative: " + len2);
+
+        long rem = len2 % ADLER32_BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (rem * sum1) % ADLER32_BASE;
+        sum1 += (adler2 & 0xffff) + ADLER32_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + ADLER32_BASE - rem;
+        if (sum1 >= ADLER32_BASE)
+            sum1 -= ADLER32_BASE;
+        if (sum1 >= ADLER32_BASE)
+            sum1 -= ADLER32_BASE;
+        if (sum2 >= (ADLER32_BASE << 1))
+            sum2 -= (ADLER32_BASE << 1);
+        if (sum2 >= ADLER32_BASE)
+            sum2 -= ADLER32_BASE;
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * Combines two reflected CRCs by applying <code>len2</code> zero bytes
+     * to <code>crc1</code> through repeated squaring of the GF(2) matrix of
+     * the CRC's shift register, as in zlib's <code>crc32_combine()</code>.
+     */
+    private static long crcCombine(int polynomial, long crc1, long crc2, long len2) {
+        if (len2 < 0)
+            throw new IllegalArgumentException("len2 is negative: " + len2);
+        if (len2 == 0)
+            return crc1;
+
+        int[] even = new int[32]; // Operator for an even power of two zero bits.
+        int[] odd = new int[32]; // Operator for an odd power of two zero bits.
+
+        // The operator for one zero bit.
+        odd[0] = polynomial;
+        int row = 1;
+        for (int n = 1; n < 32; ++n) {
+            odd[n] = row;
+            row <<= 1;
+        }
+
+        gf2MatrixSquare(even, odd); // Two zero bits.
+        gf2MatrixSquare(odd, even); // Four zero bits.
+
+        // Apply len2 zero bytes to crc1; the first squaring gives the operator for one zero byte.
+        int crc = (int) crc1;
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((len2 & 1) != 0)
+                crc = gf2MatrixTimes(even, crc);
+            len2 >>>= 1;
+            if (len2 == 0)
+                break;
+
+            gf2MatrixSquare(odd, even);
+            if ((len2 & 1) != 0)
+                crc = gf2MatrixTimes(odd, crc);
+            len2 >>>= 1;
+        } while (len2 != 0);
+
+        return (crc ^ crc2) & 0xffff_ffffL;
+    }
+
+    /**
+     * Returns the GF(2) matrix that applies <code>len</code> zero bytes to a
+     * reflected CRC with the given polynomial, so that
+     * <code>gf2MatrixTimes(operator, crc1) ^ crc2</code> combines two CRCs
+     * like {@link #crc32Combine(long, long, long)}. Worth it when many CRCs
+     * are shifted by the same length.
+     */
+    static int[] crcShiftOperator(int polynomial, long len) {
+        if (len < 0)
+            throw new IllegalArgumentException("len is negative: " + len);
+
+        // The operator for one zero bit, squared three times to get one zero byte.
+        int[] op = new int[32];
+        op[0] = polynomial;
+        for (int n = 1; n < 32; ++n)
+            op[n] = 1 << (n - 1);
+        int[] tmp = new int[32];
+        for (int i = 0; i < 3; ++i) {
+            gf2MatrixSquare(tmp, op);
+            int[] t = op;
+            op = tmp;
+            tmp = t;
+        }
+
+        int[] result = new int[32];
+        for (int n = 0; n < 32; ++n)
+            result[n] = 1 << n;
+        while (len != 0) {
+            if ((len & 1) != 0) {
+                for (int n = 0; n < 32; ++n)
+                    tmp[n] = gf2MatrixTimes(op, result[n]);
+                int[] t = result;
+                result = tmp;
+                tmp = t;
+            }
+            len >>>= 1;
+            if (len != 0) {
+                gf2MatrixSquare(tmp, op);
+                int[] t = op;
+                op = tmp;
+                tmp = t;
+            }
+        }
+        return result;
+    }
+
+    static int gf2MatrixTimes(int[] mat, int vec) {
+        int sum = 0;
+        for (int i = 0; vec != 0; ++i, vec >>>= 1) {
+            if ((vec & 1) != 0)
+                sum ^= mat[i];
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(int[] square, int[] mat) {
+        for (int n = 0; n < 32; ++n)
+            square[n] = gf2MatrixTimes(mat, mat[n]);
+    }
+
+    /**
+     * Computes a checksum of <code>length</code> bytes of <code>s</code>
+     * starting at <code>pos</code>, using one thread per available processor.
+     *
+     * @see #checksum(ReadableRandomAccessStream, long, long, Algorithm, int, int, Executor)
+     */
+    public static long checksum(ReadableRandomAccessStream s, long pos, long length, Algorithm algorithm) {
+        return checksum(s, pos, length, algorithm, DEFAULT_CHUNK_SIZE,
+                Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Computes a checksum of <code>length</code> bytes of <code>s</code>
+     * starting at <code>pos</code>. The region is split into chunks of
+     * <code>chunkSize</code> bytes which are read and checksummed by
+     * <code>parallelism</code> workers, one of which is the calling thread,
+     * and the partial checksums are combined in order.
+     *
+     * @param s           the stream to read from.
+     * @param pos         the position in the stream where the region starts.
+     * @param length      the length of the region.
+     * @param algorithm   a combinable algorithm.
+     * @param chunkSize   the size of each chunk in bytes.
+     * @param parallelism the number of chunks to work on at the same time.
+     * @param executor    the executor that the additional workers run on, or
+     *                    <code>null</code> to start
+     *                    <code>parallelism - 1</code> threads of its own for
+     *                    the duration of the call.
+     * @return the checksum, as returned by {@link Checksum#getValue()}.
+     * @throws org.catacombae.io.RuntimeIOException if the stream ends before
+     *                                              the region does, or if an I/O error occurred.
+     */
+    public static long checksum(ReadableRandomAccessStream s, long pos, long length, Algorithm algorithm,
+                                int chunkSize, int parallelism, Executor executor) {
+        long[] partialChecksums = partialChecksums(s, pos, length, algorithm, chunkSize, parallelism, executor);
+
+        long result = algorithm.newChecksum().getValue();
+        for (int i = 0; i < partialChecksums.length; ++i) {
+            long chunkLength = Math.min(chunkSize, length - (long) i * chunkSize);
+            result = algorithm.combine(result, partialChecksums[i], chunkLength);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the checksums of each of the chunks of <code>chunkSize</code>
+     * bytes that the region is split into (the last one may be shorter),
+     * computed in parallel. See
+     * {@link #checksum(ReadableRandomAccessStream, long, long, Algorithm, int, int, Executor)}.
+     */
+    static long[] partialChecksums(ReadableRandomAccessStream s, long pos, long length, Algorithm algorithm,
+                                   int chunkSize, int parallelism, Executor executor) {
+        if (!algorithm.isCombinable())
+            throw new IllegalArgumentException(algorithm + " can't be computed in parallel.");
+        checkRegion(pos, length, chunkSize);
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+
+        long chunkCount = (length + chunkSize - 1) / chunkSize;
+        if (chunkCount > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("chunkSize too small for a region of length " + length);
+
+        long[] partialChecksums = new long[(int) chunkCount];
+        AtomicInteger nextChunk = new AtomicInteger();
+        Runnable worker = () -> {
+            byte[] buffer = new byte[(int) Math.min(chunkSize, length)];
+            Checksum checksum = algorithm.newChecksum();
+            int i;
+            while ((i = nextChunk.getAndIncrement()) < chunkCount) {
+                long chunkStart = (long) i * chunkSize;
+                int chunkLength = (int) Math.min(chunkSize, length - chunkStart);
+                IOUtil.readFullyAt(s, pos + chunkStart, buffer, 0, chunkLength);
+
+                checksum.reset();
+                checksum.update(buffer, 0, chunkLength);
+                partialChecksums[i] = checksum.getValue();
+            }
+        };
+
+        int workers = (int) Math.min(parallelism, chunkCount);
+        ExecutorService ownExecutor = executor == null && workers > 1 ? newWorkerPool(workers - 1) : null;
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 1; i < workers; ++i)
+                futures.add(CompletableFuture.runAsync(worker, executor != null ? executor : ownExecutor));
+
+            try {
+                worker.run();
+            } catch (RuntimeException ex) {
+                // Make the other workers run out of chunks.
+                nextChunk.set(Integer.MAX_VALUE);
+                throw ex;
+            }
+            for (CompletableFuture<Void> future : futures)
+                join(future);
+
+            return partialChecksums;
+        } finally {
+            if (ownExecutor != null)
+                ownExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Computes a checksum or message digest of <code>length</code> bytes of
+     * <code>s</code> starting at <code>pos</code>, on threads of its own.
+     *
+     * @see #digest(ReadableRandomAccessStream, long, long, Algorithm, int, Executor)
+     */
+    public static byte[] digest(ReadableRandomAccessStream s, long pos, long length, Algorithm algorithm) {
+        return digest(s, pos, length, algorithm, DEFAULT_CHUNK_SIZE, null);
+    }
+
+    /**
+     * Computes a checksum or message digest of <code>length</code> bytes of
+     * <code>s</code> starting at <code>pos</code>.
+     * <p>
+     * Checksums are computed in parallel as described in
+     * {@link #checksum(ReadableRandomAccessStream, long, long, Algorithm, int, int, Executor)}
+     * and returned as 4 big endian bytes. For message digests a few chunks of
+     * <code>chunkSize</code> bytes are read ahead on <code>executor</code>
+     * while the calling thread hashes the chunks in order.
+     *
+     * @param s         the stream to read from.
+     * @param pos       the position in the stream where the region starts.
+     * @param length    the length of the region.
+     * @param algorithm the algorithm to use.
+     * @param chunkSize the size of each chunk in bytes.
+     * @param executor  the executor that chunks are read on, or
+     *                  <code>null</code> to start threads of its own for the
+     *                  duration of the call.
+     * @return the checksum or digest.
+     * @throws org.catacombae.io.RuntimeIOException if the stream ends before
+     *                                              the region does, or if an I/O error occurred.
+     */
+    public static byte[] digest(ReadableRandomAccessStream s, long pos, long length, Algorithm algorithm,
+                                int chunkSize, Executor executor) {
+        if (algorithm.isCombinable()) {
+            long checksum = checksum(s, pos, length, algorithm, chunkSize,
+                    Runtime.getRuntime().availableProcessors(), executor);
+            return Util.toByteArrayBE((int) checksum);
+        }
+
+        checkRegion(pos, length, chunkSize);
+
+        long chunkCount = (length + chunkSize - 1) / chunkSize;
+        ExecutorService ownExecutor = executor == null && chunkCount > 0 ?
+                newWorkerPool((int) Math.min(PIPELINE_DEPTH, chunkCount)) : null;
+        Executor readExecutor = executor != null ? executor : ownExecutor;
+
+        class Chunk {
+
+            final byte[] buffer;
+            final int length;
+            final CompletableFuture<Void> read;
+
+            Chunk(byte[] buffer, long chunkPos, int length) {
+                this.buffer = buffer;
+                this.length = length;
+                this.read = CompletableFuture.runAsync(() -> IOUtil.readFullyAt(s, chunkPos, buffer, 0, length),
+                        readExecutor);
+            }
+        }
+
+        MessageDigest digest = algorithm.newMessageDigest();
+        ArrayDeque<Chunk> inFlight = new ArrayDeque<>();
+        ArrayDeque<byte[]> freeBuffers = new ArrayDeque<>();
+        long nextPos = 0;
+        try {
+            while (true) {
+                while (inFlight.size() < PIPELINE_DEPTH && nextPos < length) {
+                    byte[] buffer = freeBuffers.isEmpty() ? new byte[(int) Math.min(chunkSize, length)] :
+                            freeBuffers.pop();
+                    int chunkLength = (int) Math.min(chunkSize, length - nextPos);
+                    inFlight.add(new Chunk(buffer, pos + nextPos, chunkLength));
+                    nextPos += chunkLength;
+                }
+
+                Chunk chunk = inFlight.poll();
+                if (chunk == null)
+                    break;
+
+                join(chunk.read);
+                digest.update(chunk.buffer, 0, chunk.length);
+                freeBuffers.push(chunk.buffer);
+            }
+        } finally {
+            if (ownExecutor != null)
+                ownExecutor.shutdown();
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * Creates the daemon threads that a call uses when no executor is
+     * supplied. Blocking reads on the common fork/join pool would starve
+     * unrelated computations, and the caller is expected to shut the pool
+     * down when it returns.
+     */
+    private static ExecutorService newWorkerPool(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "catacombae-checksum-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static void checkRegion(long pos, long length, int chunkSize) {
+        if (pos < 0)
+            throw new IllegalArgumentException("pos is negative: " + pos);
+        if (length < 0)
+            throw new IllegalArgumentException("length is negative: " + length);
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+    }
+
+    /** Waits for <code>future</code>, rethrowing what it failed with. */
+    private static void join(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            if (ex.getCause() instanceof Error)
+                throw (Error) ex.getCause();
+            throw new RuntimeIOException(ex.toString());
+        }
+    }
+}
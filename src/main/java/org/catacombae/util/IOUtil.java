@@ -18,10 +18,33 @@
 
 package org.catacombae.util;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.catacombae.io.AccessHint;
+import org.catacombae.io.AdvisableRandomAccess;
+import org.catacombae.io.AsyncReadableRandomAccess;
+import org.catacombae.io.PositionalReadable;
+import org.catacombae.io.RandomAccessStream;
 import org.catacombae.io.ReadableRandomAccessStream;
 import org.catacombae.io.RuntimeIOException;
+import org.catacombae.io.TransferableReadable;
+import org.catacombae.io.TransferableWritable;
+import org.catacombae.io.VectoredReadable;
 
 
 /**
@@ -31,6 +54,29 @@ import org.catacombae.io.RuntimeIOException;
  */
 public class IOUtil {
 
+    /**
+     * Pool for the blocking fallback of the asynchronous reads, kept separate
+     * from the common fork/join pool so that reads waiting for I/O don't
+     * starve unrelated computations.
+     */
+    private static class BlockingReadExecutorHolder {
+
+        static final Executor executor;
+
+        static {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "catacombae-blocking-read-" + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+    }
+
     /**
      * Reads the supplied ReadableRandomAccessStream from its current position
      * until the end of the stream.
@@ -73,4 +119,488 @@ public class IOUtil {
 
         return res;
     }
+
+    /**
+     * Reads up to <code>len</code> bytes from position <code>pos</code> of the
+     * supplied stream without permanently changing its file pointer.
+     * <p>
+     * If the stream is {@link PositionalReadable} the read is forwarded to it
+     * directly. Otherwise it is emulated with seek+read+seek while holding the
+     * monitor of <code>s</code>, which makes it atomic with respect to other
+     * invocations of this method on the same stream (but not with respect to
+     * other users of the stream that don't synchronize on it).
+     *
+     * @param s    the stream to read from.
+     * @param pos  the position in the stream where reading should start.
+     * @param data the array where the output data should be stored.
+     * @param off  the start position in the array where data should be stored.
+     * @param len  the maximum number of bytes to read.
+     * @return the number of bytes that were read, or -1 if no bytes could be
+     * read due to end of stream.
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred
+     *                                              when reading the stream.
+     */
+    public static int readAt(ReadableRandomAccessStream s, long pos, byte[] data, int off, int len)
+            throws RuntimeIOException {
+        if (s instanceof PositionalReadable) {
+            return ((PositionalReadable) s).readAt(pos, data, off, len);
+        }
+
+        synchronized (s) {
+            long oldFP = s.getFilePointer();
+            if (oldFP != pos) {
+                s.seek(pos);
+            }
+
+            try {
+                return s.read(data, off, len);
+            } finally {
+                s.seek(oldFP);
+            }
+        }
+    }
+
+    /**
+     * Reads up to <code>dst.remaining()</code> bytes from position
+     * <code>pos</code> of the supplied stream into <code>dst</code> without
+     * permanently changing the file pointer of the stream. See
+     * {@link #readAt(ReadableRandomAccessStream, long, byte[], int, int)}.
+     *
+     * @param s   the stream to read from.
+     * @param pos the position in the stream where reading should start.
+     * @param dst the buffer where the output data should be stored.
+     * @return the number of bytes that were read, or -1 if no bytes could be
+     * read due to end of stream.
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred
+     *                                              when reading the stream.
+     */
+    public static int readAt(ReadableRandomAccessStream s, long pos, ByteBuffer dst) throws RuntimeIOException {
+        if (s instanceof PositionalReadable) {
+            return ((PositionalReadable) s).readAt(pos, dst);
+        }
+
+        synchronized (s) {
+            long oldFP = s.getFilePointer();
+            if (oldFP != pos) {
+                s.seek(pos);
+            }
+
+            try {
+                return s.read(dst);
+            } finally {
+                s.seek(oldFP);
+            }
+        }
+    }
+
+    /**
+     * Like {@link #readAt(ReadableRandomAccessStream, long, byte[], int, int)},
+     * but keeps reading until exactly <code>len</code> bytes have been read.
+     *
+     * @throws org.catacombae.io.RuntimeIOException if the stream doesn't
+     *                                              contain enough data to fill <code>len</code> bytes, or if an I/O
+     *                                              error occurred.
+     */
+    public static void readFullyAt(ReadableRandomAccessStream s, long pos, byte[] data, int off, int len)
+            throws RuntimeIOException {
+        if (len < 0)
+            throw new IllegalArgumentException("len is negative: " + len);
+        int bytesRead = 0;
+        while (bytesRead < len) {
+            int curBytesRead = readAt(s, pos + bytesRead, data, off + bytesRead, len - bytesRead);
+            if (curBytesRead > 0)
+                bytesRead += curBytesRead;
+            else
+                throw new RuntimeIOException("Couldn't read the entire length.");
+        }
+    }
+
+    /** Largest range of merged requests that is read through one temporary array. */
+    private static final int MAX_MERGED_READ_SIZE = 1024 * 1024;
+
+    /**
+     * Reads a batch of scattered ranges from the supplied stream without
+     * permanently changing its file pointer. If the stream is
+     * {@link VectoredReadable} the batch is delegated to it. Otherwise the
+     * requests are sorted by position, adjacent and overlapping requests are
+     * merged into single reads of at most 1 MiB, and the data is scattered
+     * to the requesting buffers.
+     *
+     * @param s         the stream to read from.
+     * @param positions the positions in the stream where each read should
+     *                  start.
+     * @param buffers   the arrays where the output data should be stored.
+     * @param offsets   the start positions in the arrays where data should be
+     *                  stored.
+     * @param lengths   the number of bytes to read for each request.
+     * @throws org.catacombae.io.RuntimeIOException if the stream doesn't
+     *                                              contain enough data to fill all requests, or if an I/O error
+     *                                              occurred.
+     * @see VectoredReadable#readFullyAt(long[], byte[][], int[], int[])
+     */
+    public static void readFullyAt(ReadableRandomAccessStream s, long[] positions, byte[][] buffers, int[] offsets,
+                                   int[] lengths) throws RuntimeIOException {
+        if (s instanceof VectoredReadable) {
+            ((VectoredReadable) s).readFullyAt(positions, buffers, offsets, lengths);
+            return;
+        }
+
+        if (buffers.length != positions.length || offsets.length != positions.length ||
+                lengths.length != positions.length)
+            throw new IllegalArgumentException("Request arrays differ in length.");
+
+        Integer[] order = new Integer[positions.length];
+        for (int i = 0; i < order.length; ++i)
+            order[i] = i;
+        Arrays.sort(order, Comparator.comparingLong(request -> positions[request]));
+
+        byte[] mergeBuffer = null;
+        int i = 0;
+        while (i < order.length) {
+            int first = order[i];
+            long runStart = positions[first];
+            long runEnd = runStart + lengths[first];
+
+            int j = i + 1;
+            while (j < order.length) {
+                int next = order[j];
+                long nextEnd = Math.max(runEnd, positions[next] + lengths[next]);
+                if (positions[next] > runEnd || nextEnd - runStart > MAX_MERGED_READ_SIZE)
+                    break;
+                runEnd = nextEnd;
+                ++j;
+            }
+
+            if (j == i + 1) {
+                readFullyAt(s, runStart, buffers[first], offsets[first], lengths[first]);
+            } else {
+                int runLength = (int) (runEnd - runStart);
+                if (mergeBuffer == null || mergeBuffer.length < runLength)
+                    mergeBuffer = new byte[runLength];
+                readFullyAt(s, runStart, mergeBuffer, 0, runLength);
+
+                for (int k = i; k < j; ++k) {
+                    int request = order[k];
+                    System.arraycopy(mergeBuffer, (int) (positions[request] - runStart), buffers[request],
+                            offsets[request], lengths[request]);
+                }
+            }
+
+            i = j;
+        }
+    }
+
+    /** Size of the buffer used when a transfer has to be copied through the heap. */
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Transfers up to <code>count</code> bytes starting at position
+     * <code>position</code> of the supplied stream to <code>target</code>
+     * without permanently changing the file pointer of the stream. If the
+     * stream is {@link TransferableReadable} the transfer is delegated to it,
+     * otherwise the data is copied through a temporary buffer.
+     *
+     * @param s        the stream to read from.
+     * @param position the position in the stream where the transfer should
+     *                 start.
+     * @param count    the maximum number of bytes to transfer.
+     * @param target   the channel to write the data to.
+     * @return the number of bytes that were transferred.
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred.
+     * @see TransferableReadable#transferTo(long, long, WritableByteChannel)
+     */
+    public static long transferTo(ReadableRandomAccessStream s, long position, long count, WritableByteChannel target)
+            throws RuntimeIOException {
+        if (s instanceof TransferableReadable) {
+            return ((TransferableReadable) s).transferTo(position, count, target);
+        }
+
+        try {
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(count, TRANSFER_BUFFER_SIZE));
+            long transferred = 0;
+            while (transferred < count) {
+                buf.clear().limit((int) Math.min(buf.capacity(), count - transferred));
+                if (readAt(s, position + transferred, buf) <= 0)
+                    break;
+
+                buf.flip();
+                while (buf.hasRemaining())
+                    transferred += target.write(buf);
+            }
+            return transferred;
+        } catch (IOException ex) {
+            throw new RuntimeIOException(ex);
+        }
+    }
+
+    /**
+     * Transfers up to <code>count</code> bytes from <code>src</code> into the
+     * supplied stream at position <code>position</code> without permanently
+     * changing the file pointer of the stream. If the stream is
+     * {@link TransferableWritable} the transfer is delegated to it, otherwise
+     * the data is copied through a temporary buffer while holding the monitor
+     * of the stream.
+     *
+     * @param s        the stream to write to.
+     * @param src      the channel to read the data from.
+     * @param position the position in the stream where the transfer should
+     *                 start.
+     * @param count    the maximum number of bytes to transfer.
+     * @return the number of bytes that were transferred.
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred.
+     * @see TransferableWritable#transferFrom(ReadableByteChannel, long, long)
+     */
+    public static long transferFrom(RandomAccessStream s, ReadableByteChannel src, long position, long count)
+            throws RuntimeIOException {
+        if (s instanceof TransferableWritable) {
+            return ((TransferableWritable) s).transferFrom(src, position, count);
+        }
+
+        synchronized (s) {
+            long oldFP = s.getFilePointer();
+            s.seek(position);
+
+            try {
+                ByteBuffer buf = ByteBuffer.allocate((int) Math.min(count, TRANSFER_BUFFER_SIZE));
+                long transferred = 0;
+                while (transferred < count) {
+                    buf.clear().limit((int) Math.min(buf.capacity(), count - transferred));
+                    if (src.read(buf) <= 0)
+                        break;
+
+                    buf.flip();
+                    transferred += buf.remaining();
+                    s.write(buf);
+                }
+                return transferred;
+            } catch (IOException ex) {
+                throw new RuntimeIOException(ex);
+            } finally {
+                s.seek(oldFP);
+            }
+        }
+    }
+
+    /**
+     * Transfers up to <code>count</code> bytes starting at position
+     * <code>position</code> of <code>channel</code> to <code>target</code>,
+     * repeating {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+     * until <code>count</code> bytes have been transferred or no more progress
+     * is made.
+     *
+     * @return the number of bytes that were transferred.
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred.
+     */
+    public static long transferTo(FileChannel channel, long position, long count, WritableByteChannel target)
+            throws RuntimeIOException {
+        try {
+            long transferred = 0;
+            while (transferred < count) {
+                long res = channel.transferTo(position + transferred, count - transferred, target);
+                if (res <= 0)
+                    break;
+                transferred += res;
+            }
+            return transferred;
+        } catch (IOException ex) {
+            throw new RuntimeIOException("position=" + position + "," + ex, ex);
+        }
+    }
+
+    /**
+     * Transfers up to <code>count</code> bytes from <code>src</code> into
+     * <code>channel</code> at position <code>position</code>, repeating
+     * {@link FileChannel#transferFrom(ReadableByteChannel, long, long)} until
+     * <code>count</code> bytes have been transferred or <code>src</code> has
+     * no more data. Unlike FileChannel.transferFrom, a position beyond the end
+     * of the file extends the file just like a positional write would.
+     *
+     * @return the number of bytes that were transferred.
+     * @throws org.catacombae.io.RuntimeIOException if an I/O error occurred.
+     */
+    public static long transferFrom(FileChannel channel, ReadableByteChannel src, long position, long count)
+            throws RuntimeIOException {
+        try {
+            long transferred = 0;
+            while (transferred < count) {
+                long pos = position + transferred;
+                long res;
+                if (pos > channel.size()) {
+                    // transferFrom doesn't write beyond the end of the file, so
+                    // copy the first chunk by hand to extend it.
+                    ByteBuffer buf = ByteBuffer.allocate((int) Math.min(count - transferred, TRANSFER_BUFFER_SIZE));
+                    if (src.read(buf) <= 0)
+                        break;
+
+                    buf.flip();
+                    res = buf.remaining();
+                    while (buf.hasRemaining())
+                        channel.write(buf, pos + buf.position());
+                } else {
+                    res = channel.transferFrom(src, pos, count - transferred);
+                    if (res <= 0)
+                        break;
+                }
+                transferred += res;
+            }
+            return transferred;
+        } catch (IOException ex) {
+            throw new RuntimeIOException("position=" + position + "," + ex, ex);
+        }
+    }
+
+    /**
+     * Starts reading as much data as possible, up to <code>dst.remaining()</code>
+     * bytes, from position <code>pos</code> of the supplied stream into
+     * <code>dst</code>. Equivalent to
+     * {@link #readAsync(ReadableRandomAccessStream, long, ByteBuffer, Executor)}
+     * with a <code>null</code> executor.
+     *
+     * @param s   the stream to read from.
+     * @param pos the position in the stream where reading should start.
+     * @param dst the buffer where the output data should be stored.
+     * @return a future completed with the number of bytes that were read, or
+     * -1 if no bytes could be read due to end of stream.
+     * @see AsyncReadableRandomAccess#readAsync(long, ByteBuffer)
+     */
+    public static CompletableFuture<Integer> readAsync(ReadableRandomAccessStream s, long pos, ByteBuffer dst) {
+        return readAsync(s, pos, dst, null);
+    }
+
+    /**
+     * Starts reading as much data as possible, up to <code>dst.remaining()</code>
+     * bytes, from position <code>pos</code> of the supplied stream into
+     * <code>dst</code>. If the stream is {@link AsyncReadableRandomAccess} the
+     * read is delegated to it. Otherwise the read is a blocking
+     * {@link #readAt(ReadableRandomAccessStream, long, ByteBuffer)} that
+     * occupies a thread of <code>executor</code> until it has finished.
+     *
+     * @param s        the stream to read from.
+     * @param pos      the position in the stream where reading should start.
+     * @param dst      the buffer where the output data should be stored.
+     * @param executor the executor that blocking reads are run on, or
+     *                 <code>null</code> to use a shared pool of daemon threads
+     *                 bounded by the number of available processors.
+     * @return a future completed with the number of bytes that were read, or
+     * -1 if no bytes could be read due to end of stream.
+     * @see AsyncReadableRandomAccess#readAsync(long, ByteBuffer)
+     */
+    public static CompletableFuture<Integer> readAsync(ReadableRandomAccessStream s, long pos, ByteBuffer dst,
+            Executor executor) {
+        if (s instanceof AsyncReadableRandomAccess) {
+            return ((AsyncReadableRandomAccess) s).readAsync(pos, dst);
+        } else if (s instanceof PositionalReadable) {
+            return readAtAsync((PositionalReadable) s, pos, dst, executor);
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            int bytesRead = 0;
+            while (dst.hasRemaining()) {
+                int res = readAt(s, pos + bytesRead, dst);
+                if (res <= 0)
+                    break;
+                bytesRead += res;
+            }
+            return bytesRead > 0 || !dst.hasRemaining() ? bytesRead : -1;
+        }, executor != null ? executor : BlockingReadExecutorHolder.executor);
+    }
+
+    /**
+     * Reads as much data as possible, up to <code>dst.remaining()</code> bytes,
+     * from position <code>pos</code> of <code>r</code> into <code>dst</code>
+     * on <code>executor</code>, using the blocking
+     * {@link PositionalReadable#readAt(long, ByteBuffer)}. This is the
+     * fallback that streams without native asynchronous I/O use to implement
+     * {@link AsyncReadableRandomAccess}: every pending read occupies a thread
+     * of <code>executor</code> until it has finished.
+     *
+     * @param r        the stream to read from.
+     * @param pos      the position in the stream where reading should start.
+     * @param dst      the buffer where the output data should be stored.
+     * @param executor the executor that the read is run on, or
+     *                 <code>null</code> to use a shared pool of daemon threads
+     *                 bounded by the number of available processors.
+     * @return a future completed with the number of bytes that were read, or
+     * -1 if no bytes could be read due to end of stream.
+     */
+    public static CompletableFuture<Integer> readAtAsync(PositionalReadable r, long pos, ByteBuffer dst,
+            Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            int bytesRead = 0;
+            while (dst.hasRemaining()) {
+                int res = r.readAt(pos + bytesRead, dst);
+                if (res <= 0)
+                    break;
+                bytesRead += res;
+            }
+            return bytesRead > 0 || !dst.hasRemaining() ? bytesRead : -1;
+        }, executor != null ? executor : BlockingReadExecutorHolder.executor);
+    }
+
+    /**
+     * Starts reading as much data as possible, up to <code>dst.remaining()</code>
+     * bytes, from position <code>pos</code> of <code>channel</code> into
+     * <code>dst</code>, repeating the read on partial completion until
+     * <code>dst</code> is full or end of file is reached.
+     *
+     * @return a future completed with the number of bytes that were read, or
+     * -1 if no bytes could be read due to end of file. I/O errors complete
+     * the future exceptionally with a {@link RuntimeIOException}.
+     */
+    public static CompletableFuture<Integer> readAsync(AsynchronousFileChannel channel, long pos, ByteBuffer dst) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        if (!dst.hasRemaining()) {
+            future.complete(0);
+            return future;
+        }
+
+        CompletionHandler<Integer, Integer> handler = new CompletionHandler<>() {
+            @Override
+            public void completed(Integer result, Integer bytesRead) {
+                int total = bytesRead + Math.max(result, 0);
+                if (result <= 0 || !dst.hasRemaining()) {
+                    future.complete(total > 0 || result == 0 ? total : -1);
+                    return;
+                }
+
+                try {
+                    channel.read(dst, pos + total, total, this);
+                } catch (RuntimeException ex) {
+                    future.completeExceptionally(ex);
+                }
+            }
+
+            @Override
+            public void failed(Throwable exc, Integer bytesRead) {
+                if (exc instanceof IOException)
+                    exc = new RuntimeIOException("pos=" + (pos + bytesRead) + "," + exc, (IOException) exc);
+                future.completeExceptionally(exc);
+            }
+        };
+
+        try {
+            channel.read(dst, pos, 0, handler);
+        } catch (RuntimeException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Tells the supplied stream that the range of <code>length</code> bytes
+     * starting at <code>pos</code> will be accessed as described by
+     * <code>hint</code>. If the stream isn't {@link AdvisableRandomAccess}
+     * the advice is ignored.
+     *
+     * @param s      the stream to advise.
+     * @param pos    the position in the stream where the range starts.
+     * @param length the length of the range, or 0 for the rest of the stream.
+     * @param hint   the expected access pattern.
+     * @see AdvisableRandomAccess#advise(long, long, AccessHint)
+     */
+    public static void advise(ReadableRandomAccessStream s, long pos, long length, AccessHint hint) {
+        if (s instanceof AdvisableRandomAccess) {
+            ((AdvisableRandomAccess) s).advise(pos, length, hint);
+        }
+    }
 }
@@ -168,14 +168,7 @@ public class Util {
     }
 
     public static long readLongLE(byte[] data, int offset) {
-        return (((long) data[offset + 7] & 0xFF) << 56 |
-                ((long) data[offset + 6] & 0xFF) << 48 |
-                ((long) data[offset + 5] & 0xFF) << 40 |
-                ((long) data[offset + 4] & 0xFF) << 32 |
-                ((long) data[offset + 3] & 0xFF) << 24 |
-                ((long) data[offset + 2] & 0xFF) << 16 |
-                ((long) data[offset + 1] & 0xFF) << 8 |
-                ((long) data[offset + 0] & 0xFF) << 0);
+        return ByteArrayCodec.readLongLE(data, offset);
     }
 
     public static int readIntLE(byte[] data) {
@@ -183,10 +176,7 @@ public class Util {
     }
 
     public static int readIntLE(byte[] data, int offset) {
-        return ((data[offset + 3] & 0xFF) << 24 |
-                (data[offset + 2] & 0xFF) << 16 |
-                (data[offset + 1] & 0xFF) << 8 |
-                (data[offset + 0] & 0xFF) << 0);
+        return ByteArrayCodec.readIntLE(data, offset);
     }
 
     public static short readShortLE(byte[] data) {
@@ -194,8 +184,7 @@ public class Util {
     }
 
     public static short readShortLE(byte[] data, int offset) {
-        return (short) ((data[offset + 1] & 0xFF) << 8 |
-                (data[offset + 0] & 0xFF) << 0);
+        return ByteArrayCodec.readShortLE(data, offset);
     }
 
     public static byte readByteLE(byte[] data) {
@@ -211,14 +200,7 @@ public class Util {
     }
 
     public static long readLongBE(byte[] data, int offset) {
-        return (((long) data[offset + 0] & 0xFF) << 56 |
-                ((long) data[offset + 1] & 0xFF) << 48 |
-                ((long) data[offset + 2] & 0xFF) << 40 |
-                ((long) data[offset + 3] & 0xFF) << 32 |
-                ((long) data[offset + 4] & 0xFF) << 24 |
-                ((long) data[offset + 5] & 0xFF) << 16 |
-                ((long) data[offset + 6] & 0xFF) << 8 |
-                ((long) data[offset + 7] & 0xFF) << 0);
+        return ByteArrayCodec.readLongBE(data, offset);
     }
 
     public static int readIntBE(byte[] data) {
@@ -226,10 +208,7 @@ public class Util {
     }
 
     public static int readIntBE(byte[] data, int offset) {
-        return ((data[offset + 0] & 0xFF) << 24 |
-                (data[offset + 1] & 0xFF) << 16 |
-                (data[offset + 2] & 0xFF) << 8 |
-                (data[offset + 3] & 0xFF) << 0);
+        return ByteArrayCodec.readIntBE(data, offset);
     }
 
     public static short readShortBE(byte[] data) {
@@ -237,8 +216,7 @@ public class Util {
     }
 
     public static short readShortBE(byte[] data, int offset) {
-        return (short) ((data[offset + 0] & 0xFF) << 8 |
-                (data[offset + 1] & 0xFF) << 0);
+        return ByteArrayCodec.readShortBE(data, offset);
     }
 
     public static byte readByteBE(byte[] data) {
@@ -998,8 +976,7 @@ public class Util {
     }
 
     public static char readCharLE(byte[] data, int offset) {
-        return (char) ((data[offset + 1] & 0xFF) << 8 |
-                (data[offset + 0] & 0xFF) << 0);
+        return ByteArrayCodec.readCharLE(data, offset);
     }
 
     public static char readCharBE(byte[] data) {
@@ -1007,8 +984,7 @@ public class Util {
     }
 
     public static char readCharBE(byte[] data, int offset) {
-        return (char) ((data[offset + 0] & 0xFF) << 8 |
-                (data[offset + 1] & 0xFF) << 0);
+        return ByteArrayCodec.readCharBE(data, offset);
     }
 
     /** Stupid method which should go away. */
@@ -1068,8 +1044,7 @@ public class Util {
 
     public static char[] readCharArrayLE(byte[] b, int offset, int length) {
         char[] result = new char[length / 2];
-        for (int i = 0; i < result.length; ++i)
-            result[i] = Util.readCharLE(b, offset + (i * 2));
+        ArrayKernels.readCharArrayLE(b, offset, result, 0, result.length);
         return result;
     }
 
@@ -1149,8 +1124,7 @@ public class Util {
 
     public static short[] readShortArrayBE(byte[] b, int offset, int length) {
         short[] result = new short[length / 2];
-        for (int i = 0; i < result.length; ++i)
-            result[i] = Util.readShortBE(b, offset + (i * 2));
+        ArrayKernels.readShortArrayBE(b, offset, result, 0, result.length);
         return result;
     }
 
@@ -1187,8 +1161,7 @@ public class Util {
 
     public static int[] readIntArrayBE(byte[] b, int offset, int length) {
         int[] result = new int[length / 4];
-        for (int i = 0; i < result.length; ++i)
-            result[i] = Util.readIntBE(b, offset + (i * 4));
+        ArrayKernels.readIntArrayBE(b, offset, result, 0, result.length);
         return result;
     }
 
@@ -1202,8 +1175,7 @@ public class Util {
 
     public static long[] readLongArrayLE(byte[] b, int offset, int length) {
         long[] result = new long[length / 8];
-        for (int i = 0; i < result.length; ++i)
-            result[i] = Util.readLongLE(b, offset + (i * 8));
+        ArrayKernels.readLongArrayLE(b, offset, result, 0, result.length);
         return result;
     }
 
@@ -1616,21 +1588,7 @@ public class Util {
      * @return <code>data</code>.
      */
     public static byte[] byteSwap(byte[] data, int offset, int length) {
-        int endOffset = offset + length - 1;
-        int middleOffset = offset + (length / 2);
-        byte tmp;
-
-        for (int head = offset; head < middleOffset; ++head) {
-            int tail = endOffset - head;
-            if (head == tail)
-                break;
-
-            // Swap data[head] and data[tail]
-            tmp = data[head];
-            data[head] = data[tail];
-            data[tail] = tmp;
-        }
-
+        ArrayKernels.byteSwap(data, offset, length);
         return data;
     }
 
@@ -1642,7 +1600,7 @@ public class Util {
      * @return the value of <code>i</code> in reversed byte order.
      */
     public static short byteSwap(short i) {
-        return (short) (((i & 0xFF) << 8) | ((i >> 8) & 0xFF));
+        return Short.reverseBytes(i);
     }
 
     /**
@@ -1653,7 +1611,7 @@ public class Util {
      * @return the value of <code>i</code> in reversed byte order.
      */
     public static char byteSwap(char i) {
-        return (char) (((i & 0xFF) << 8) | ((i >> 8) & 0xFF));
+        return Character.reverseBytes(i);
     }
 
     /**
@@ -1664,10 +1622,7 @@ public class Util {
      * @return the value of <code>i</code> in reversed byte order.
      */
     public static int byteSwap(int i) {
-        return (((i & 0xFF) << 24) |
-                ((i & 0xFF00) << 8) |
-                ((i >> 8) & 0xFF00) |
-                ((i >> 24) & 0xFF));
+        return Integer.reverseBytes(i);
     }
 
     /**
@@ -1678,14 +1633,7 @@ public class Util {
      * @return the value of <code>i</code> in reversed byte order.
      */
     public static long byteSwap(long i) {
-        return (((i & 0xFFL) << 56) |
-                ((i & 0xFF00L) << 40) |
-                ((i & 0xFF0000L) << 24) |
-                ((i & 0xFF000000L) << 8) |
-                ((i >> 8) & 0xFF000000L) |
-                ((i >> 24) & 0xFF0000L) |
-                ((i >> 40) & 0xFF00L) |
-                ((i >> 56) & 0xFFL));
+        return Long.reverseBytes(i);
     }
 
     /**
@@ -1709,8 +1657,7 @@ public class Util {
      * @param data  the data to write.
      */
     public static void arrayPutBE(byte[] array, int pos, short data) {
-        array[pos + 0] = (byte) ((data >> 8) & 0xFF);
-        array[pos + 1] = (byte) ((data >> 0) & 0xFF);
+        ByteArrayCodec.writeShortBE(array, pos, data);
     }
 
     /**
@@ -1722,8 +1669,7 @@ public class Util {
      * @param data  the data to write.
      */
     public static void arrayPutBE(byte[] array, int pos, char data) {
-        array[pos + 0] = (byte) ((data >> 8) & 0xFF);
-        array[pos + 1] = (byte) ((data >> 0) & 0xFF);
+        ByteArrayCodec.writeCharBE(array, pos, data);
     }
 
     /**
@@ -1735,10 +1681,7 @@ public class Util {
      * @param data  the data to write.
      */
     public static void arrayPutBE(byte[] array, int pos, int data) {
-        array[pos + 0] = (byte) ((data >> 24) & 0xFF);
-        array[pos + 1] = (byte) ((data >> 16) & 0xFF);
-        array[pos + 2] = (byte) ((data >> 8) & 0xFF);
-        array[pos + 3] = (byte) ((data >> 0) & 0xFF);
+        ByteArrayCodec.writeIntBE(array, pos, data);
     }
 
     /**
@@ -1750,14 +1693,7 @@ public class Util {
      * @param data  the data to write.
      */
     public static void arrayPutBE(byte[] array, int pos, long data) {
-        array[pos + 0] = (byte) ((data >> 56) & 0xFF);
-        array[pos + 1] = (byte) ((data >> 48) & 0xFF);
-        array[pos + 2] = (byte) ((data >> 40) & 0xFF);
-        array[pos + 3] = (byte) ((data >> 32) & 0xFF);
-        array[pos + 4] = (byte) ((data >> 24) & 0xFF);
-        array[pos + 5] = (byte) ((data >> 16) & 0xFF);
-        array[pos + 6] = (byte) ((data >> 8) & 0xFF);
-        array[pos + 7] = (byte) ((data >> 0) & 0xFF);
+        ByteArrayCodec.writeLongBE(array, pos, data);
     }
 
     /**
@@ -1905,8 +1841,7 @@ public class Util {
      * @param data  the data to write.
      */
     public static void arrayPutLE(byte[] array, int pos, short data) {
-        array[pos + 0] = (byte) ((data >> 0) & 0xFF);
-        array[pos + 1] = (byte) ((data >> 8) & 0xFF);
+        ByteArrayCodec.writeShortLE(array, pos, data);
     }
 
     /**
@@ -1918,8 +1853,7 @@ public class Util {
      * @param data  the data to write.
      */
     public static void arrayPutLE(byte[] array, int pos, char data) {
-        array[pos + 0] = (byte) ((data >> 0) & 0xFF);
-        array[pos + 1] = (byte) ((data >> 8) & 0xFF);
+        ByteArrayCodec.writeCharLE(array, pos, data);
     }
 
     /**
@@ -1931,10 +1865,7 @@ public class Util {
      * @param data  the data to write.
      */
     public static void arrayPutLE(byte[] array, int pos, int data) {
-        array[pos + 0] = (byte) ((data >> 0) & 0xFF);
-        array[pos + 1] = (byte) ((data >> 8) & 0xFF);
-        array[pos + 2] = (byte) ((data >> 16) & 0xFF);
-        array[pos + 3] = (byte) ((data >> 24) & 0xFF);
+        ByteArrayCodec.writeIntLE(array, pos, data);
     }
 
     /**
@@ -1946,14 +1877,7 @@ public class Util {
      * @param data  the data to write.
      */
     public static void arrayPutLE(byte[] array, int pos, long data) {
-        array[pos + 0] = (byte) ((data >> 0) & 0xFF);
-        array[pos + 1] = (byte) ((data >> 8) & 0xFF);
-        array[pos + 2] = (byte) ((data >> 16) & 0xFF);
-        array[pos + 3] = (byte) ((data >> 24) & 0xFF);
-        array[pos + 4] = (byte) ((data >> 32) & 0xFF);
-        array[pos + 5] = (byte) ((data >> 40) & 0xFF);
-        array[pos + 6] = (byte) ((data >> 48) & 0xFF);
-        array[pos + 7] = (byte) ((data >> 56) & 0xFF);
+        ByteArrayCodec.writeLongLE(array, pos, data);
     }
 
     /**
@@ -0,0 +1,95 @@
+/*-
+ * Copyright (C) 2024 Erik Larsson
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.catacombae.util;
+
+
+/**
+ * The portable implementation of {@link ArrayKernels}, reading whole
+ * elements through the {@link java.lang.invoke.VarHandle} byte array views of
+ * {@link ByteArrayCodec} rather than assembling them byte by byte. It is
+ * also used for the elements that don't fill a whole vector in
+ * <code>VectorArrayKernels</code>. Arguments are checked by
+ * {@link ArrayKernels}.
+ *
+ * @author <a href="https://catacombae.org" target="_top">Erik Larsson</a>
+ */
+class VarHandleArrayKernels {
+
+    String getName() {
+        return "VarHandle";
+    }
+
+    void readShortArrayBE(byte[] src, int srcOff, short[] dst, int dstOff, int count) {
+        for (int i = 0; i < count; ++i)
+            dst[dstOff + i] = ByteArrayCodec.readShortBE(src, srcOff + i * 2);
+    }
+
+    void readCharArrayLE(byte[] src, int srcOff, char[] dst, int dstOff, int count) {
+        for (int i = 0; i < count; ++i)
+            dst[dstOff + i] = ByteArrayCodec.readCharLE(src, srcOff + i * 2);
+    }
+
+    void readIntArrayBE(byte[] src, int srcOff, int[] dst, int dstOff, int count) {
+        for (int i = 0; i < count; ++i)
+            dst[dstOff + i] = ByteArrayCodec.readIntBE(src, srcOff + i * 4);
+    }
+
+    void readLongArrayLE(byte[] src, int srcOff, long[] dst, int dstOff, int count) {
+        for (int i = 0; i < count; ++i)
+            dst[dstOff + i] = ByteArrayCodec.readLongLE(src, srcOff + i * 8);
+    }
+
+    void byteSwap(byte[] data, int offset, int length) {
+        int head = offset;
+        int tail = offset + length;
+
+        // Eight bytes from each end at a time, then byte by byte in the middle.
+        while (tail - head >= 16) {
+            tail -= 8;
+            long a = ByteArrayCodec.readLongLE(data, head);
+            long b = ByteArrayCodec.readLongLE(data, tail);
+            ByteArrayCodec.writeLongLE(data, head, Long.reverseBytes(b));
+            ByteArrayCodec.writeLongLE(data, tail, Long.reverseBytes(a));
+            head += 8;
+        }
+
+        while (tail - head >= 2) {
+            --tail;
+            byte tmp = data[head];
+            data[head] = data[tail];
+            data[tail] = tmp;
+            ++head;
+        }
+    }
+
+    void byteSwap(short[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; ++i)
+            data[i] = Short.reverseBytes(data[i]);
+    }
+
+    void byteSwap(int[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; ++i)
+            data[i] = Integer.reverseBytes(data[i]);
+    }
+
+    void byteSwap(long[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; ++i)
+            data[i] = Long.reverseBytes(data[i]);
+    }
+}
@@ -0,0 +1,145 @@
+package org.catacombae.io;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.catacombae.util.IOUtil;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class CachingReadableRandomAccessStreamTest {
+
+    @Test
+    void test1() {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) (i * 3);
+
+        // 100 byte blocks, room for 3 of them.
+        CachingReadableRandomAccessStream cache =
+                new CachingReadableRandomAccessStream(new ReadableByteArrayStream(data), 100, 300);
+        SynchronizedReadableRandomAccessStream shared = new SynchronizedReadableRandomAccessStream(cache);
+        ReadableRandomAccessSubstream a = new ReadableRandomAccessSubstream(shared);
+        ReadableRandomAccessSubstream b = new ReadableRandomAccessSubstream(shared);
+
+        byte[] buf = new byte[150];
+        a.seek(50);
+        a.readFully(buf);
+        assertArrayEquals(Arrays.copyOfRange(data, 50, 200), buf);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+
+        // The second substream shares the blocks read by the first one.
+        b.seek(120);
+        b.readFully(buf, 0, 50);
+        assertArrayEquals(Arrays.copyOfRange(data, 120, 170), Arrays.copyOf(buf, 50));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        // Reading everything evicts down to the memory cap.
+        byte[] all = new byte[1000];
+        b.seek(0);
+        b.readFully(all);
+        assertArrayEquals(data, all);
+        assertTrue(cache.getCachedBytes() <= 300);
+        assertEquals(7, cache.getEvictionCount());
+
+        a.close();
+        b.close();
+        shared.close();
+    }
+
+    @Test
+    void test2() {
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) (i * 5);
+
+        AtomicInteger sourceReads = new AtomicInteger();
+        ReadableByteArrayStream source = new ReadableByteArrayStream(data) {
+            @Override
+            public int readAt(long pos, byte[] b, int off, int len) {
+                sourceReads.incrementAndGet();
+                return super.readAt(pos, b, off, len);
+            }
+        };
+
+        // Unordered, overlapping and adjacent requests plus one far away.
+        long[] positions = {350, 100, 120, 8000, 200, 0};
+        int[] lengths = {50, 60, 10, 30, 150, 0};
+        byte[][] buffers = new byte[positions.length][];
+        for (int i = 0; i < buffers.length; ++i)
+            buffers[i] = new byte[lengths[i] + 1];
+        int[] offsets = {1, 1, 1, 1, 1, 1};
+
+        // Without a cache the requests are merged into three reads.
+        IOUtil.readFullyAt(source, positions, buffers, offsets, lengths);
+        assertEquals(3, sourceReads.get());
+        for (int i = 0; i < positions.length; ++i)
+            assertArrayEquals(Arrays.copyOfRange(data, (int) positions[i], (int) positions[i] + lengths[i]),
+                    Arrays.copyOfRange(buffers[i], 1, lengths[i] + 1));
+
+        // With a cache, consecutive missing blocks are read together.
+        sourceReads.set(0);
+        CachingReadableRandomAccessStream cache = new CachingReadableRandomAccessStream(source, 100, 10000);
+        SynchronizedReadableRandomAccessStream shared = new SynchronizedReadableRandomAccessStream(cache);
+        ReadableRandomAccessSubstream sub = new ReadableRandomAccessSubstream(shared);
+        for (byte[] buffer : buffers)
+            Arrays.fill(buffer, (byte) 0);
+        sub.readFullyAt(positions, buffers, offsets, lengths);
+        assertEquals(2, sourceReads.get());
+        assertEquals(4, cache.getMissCount());
+        for (int i = 0; i < positions.length; ++i)
+            assertArrayEquals(Arrays.copyOfRange(data, (int) positions[i], (int) positions[i] + lengths[i]),
+                    Arrays.copyOfRange(buffers[i], 1, lengths[i] + 1));
+        sub.close();
+        shared.close();
+    }
+
+    @Test
+    void test3() {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) (i * 7);
+
+        CachingReadableRandomAccessStream cache =
+                new CachingReadableRandomAccessStream(new ReadableByteArrayStream(data), 100, 500);
+        SynchronizedReadableRandomAccessStream shared = new SynchronizedReadableRandomAccessStream(cache);
+        ReadableRandomAccessSubstream sub = new ReadableRandomAccessSubstream(shared);
+
+        // The hint is forwarded through the substream and the synchronized stream.
+        IOUtil.advise(sub, 0, 300, AccessHint.WILLNEED);
+        assertEquals(300, cache.getCachedBytes());
+
+        // Streaming doesn't evict the prefetched blocks.
+        IOUtil.advise(sub, 0, 0, AccessHint.SEQUENTIAL);
+        byte[] all = new byte[1000];
+        sub.readFully(all);
+        assertArrayEquals(data, all);
+        assertEquals(300, cache.getCachedBytes());
+        assertEquals(0, cache.getEvictionCount());
+        long misses = cache.getMissCount();
+
+        // Small reads within the last streamed block are still served from memory.
+        byte[] buf = new byte[10];
+        assertEquals(10, sub.readAt(950, buf, 0, 10));
+        assertEquals(misses, cache.getMissCount());
+
+        // Only blocks entirely within the range are dropped.
+        IOUtil.advise(sub, 50, 200, AccessHint.DONTNEED);
+        assertEquals(200, cache.getCachedBytes());
+
+        IOUtil.advise(sub, 0, 0, AccessHint.NORMAL);
+        assertEquals(10, sub.readAt(450, buf, 0, 10));
+        assertArrayEquals(Arrays.copyOfRange(data, 450, 460), buf);
+        assertEquals(300, cache.getCachedBytes());
+
+        sub.close();
+        shared.close();
+    }
+}
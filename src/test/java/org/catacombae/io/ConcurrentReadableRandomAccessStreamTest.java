@@ -0,0 +1,68 @@
+package org.catacombae.io;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class ConcurrentReadableRandomAccessStreamTest {
+
+    @Test
+    void test1() throws Exception {
+        byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) (i * 11);
+
+        // A source that isn't positional, so substream reads take the write lock.
+        ReadableFilterStream source = new ReadableFilterStream(new ReadableByteArrayStream(data));
+        ConcurrentReadableRandomAccessStream shared = new ConcurrentReadableRandomAccessStream(source);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; ++t) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    ReadableRandomAccessSubstream sub = new ReadableRandomAccessSubstream(shared);
+                    byte[] buf = new byte[97];
+                    for (int i = 0; i < 500; ++i) {
+                        int pos = (seed * 7919 + i * 104_729) % (data.length - buf.length);
+                        sub.seek(pos);
+                        sub.readFully(buf);
+                        assertArrayEquals(Arrays.copyOfRange(data, pos, pos + buf.length), buf);
+                    }
+                    sub.close();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, shared.getFilePointer());
+
+        InputStream in = new ReadableRandomAccessInputStream(shared, 1000, 10);
+        byte[] buf = new byte[20];
+        assertEquals(10, in.read(buf));
+        assertArrayEquals(Arrays.copyOfRange(data, 1000, 1010), Arrays.copyOf(buf, 10));
+
+        // The source is closed when the last reference goes away.
+        ReadableRandomAccessSubstream last = new ReadableRandomAccessSubstream(shared);
+        shared.close();
+        assertThrows(RuntimeIOException.class, () -> shared.addReference(this));
+        assertEquals(10, last.readAt(0, buf, 0, 10));
+        last.close();
+        assertThrows(RuntimeException.class, () -> source.read());
+    }
+}
@@ -0,0 +1,97 @@
+package org.catacombae.io;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+class FileChannelStreamTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void test1() {
+        File f = tmp.resolve("test.bin").toFile();
+
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) (i * 7);
+
+        FileChannelStream out = new FileChannelStream(f);
+        out.write(data, 0, 6000);
+        out.write(data, 6000, 4000);
+        assertEquals(10000, out.length());
+        assertEquals(10000, out.getFilePointer());
+        out.setLength(8000);
+        assertEquals(8000, out.length());
+        assertEquals(8000, out.getFilePointer());
+        out.close();
+
+        ReadableFileChannelStream in = new ReadableFileChannelStream(f);
+        in.seek(100);
+        byte[] buf = new byte[50];
+        in.readFully(buf);
+        assertEquals(150, in.getFilePointer());
+        assertArrayEquals(Arrays.copyOfRange(data, 100, 150), buf);
+
+        // Positional reads leave the file pointer alone.
+        assertEquals(50, in.readAt(7000, buf, 0, 50));
+        assertArrayEquals(Arrays.copyOfRange(data, 7000, 7050), buf);
+        assertEquals(150, in.getFilePointer());
+
+        assertEquals(20, in.readAt(7980, buf, 0, 50));
+        assertEquals(-1, in.readAt(8000, buf, 0, 50));
+
+        in.seek(8000);
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    @Test
+    void test2() {
+        File f = tmp.resolve("test.bin").toFile();
+
+        byte[] data = new byte[5000];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) (i * 13);
+
+        FileStream out = new FileStream(f);
+        out.write(ByteBuffer.wrap(data, 0, 3000));
+        ByteBuffer direct = ByteBuffer.allocateDirect(2000);
+        direct.put(data, 3000, 2000).flip();
+        out.write(direct);
+        assertEquals(5000, out.getFilePointer());
+        out.close();
+
+        // Direct buffers through a concatenated stream with a hole.
+        ReadableConcatenatedStream s = new ReadableConcatenatedStream(new ReadableFileChannelStream(f), -10, 1010);
+        s.addPart(new ReadableFileStream(f), 4000, 1000);
+        ByteBuffer dst = ByteBuffer.allocateDirect(2100);
+        dst.position(50);
+        assertEquals(2010, s.readAt(0, dst));
+        assertEquals(2060, dst.position());
+
+        byte[] actual = new byte[2010];
+        dst.flip().position(50);
+        dst.get(actual);
+        byte[] expected = new byte[2010];
+        System.arraycopy(data, 0, expected, 10, 1000);
+        System.arraycopy(data, 4000, expected, 1010, 1000);
+        assertArrayEquals(expected, actual);
+
+        s.seek(1005);
+        ByteBuffer small = ByteBuffer.allocate(10);
+        assertEquals(10, s.read(small));
+        assertArrayEquals(Arrays.copyOfRange(expected, 1005, 1015), small.array());
+        assertEquals(1015, s.getFilePointer());
+        s.close();
+    }
+}
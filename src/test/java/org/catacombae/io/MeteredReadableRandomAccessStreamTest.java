@@ -0,0 +1,90 @@
+package org.catacombae.io;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class MeteredReadableRandomAccessStreamTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void test1() {
+        assertEquals(0, LatencyHistogram.bucketIndex(0));
+        assertEquals(1, LatencyHistogram.bucketIndex(1));
+        assertEquals(10, LatencyHistogram.bucketIndex(1000));
+        assertEquals(63, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; ++i)
+            histogram.record(100);
+        histogram.record(1_000_000);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(128, snapshot.getQuantileUpperBound(0.5));
+        assertEquals(128, snapshot.getQuantileUpperBound(0.99));
+        assertEquals(1 << 20, snapshot.getQuantileUpperBound(1.0));
+    }
+
+    @Test
+    void test2() {
+        StreamMetricsRegistry.remove("test2.bytes");
+
+        byte[] data = new byte[1000];
+        MeteredReadableRandomAccessStream a =
+                new MeteredReadableRandomAccessStream(new ReadableByteArrayStream(data), "test2.bytes");
+        MeteredReadableRandomAccessStream b =
+                new MeteredReadableRandomAccessStream(new ReadableByteArrayStream(data), "test2.bytes");
+
+        byte[] buf = new byte[300];
+        a.seek(100);
+        a.readFully(buf);
+        a.seek(900);
+        assertEquals(100, a.read(buf));
+        assertEquals(-1, a.read(buf));
+        assertEquals(50, b.readAt(950, buf, 0, 300));
+
+        StreamMetrics.Snapshot sa = a.getMetrics().snapshot();
+        assertEquals(3, sa.getReadCalls());
+        assertEquals(400, sa.getBytesRead());
+        assertEquals(2, sa.getShortReads());
+        assertEquals(2, sa.getSeekCalls());
+        assertEquals(100 + 500, sa.getSeekDistance());
+        assertEquals(3, sa.getReadLatency().getCount());
+
+        StreamMetrics.Snapshot total = StreamMetricsRegistry.snapshot().get("test2.bytes");
+        assertEquals(4, total.getReadCalls());
+        assertEquals(450, total.getBytesRead());
+        assertEquals(3, total.getShortReads());
+
+        a.close();
+        b.close();
+    }
+
+    @Test
+    void test3() {
+        File f = tmp.resolve("test.bin").toFile();
+
+        MeteredRandomAccessStream s = new MeteredRandomAccessStream(new FileStream(f));
+        s.write(new byte[100]);
+        s.write(new byte[50], 10, 20);
+        s.write(7);
+        s.seek(0);
+        assertEquals(0, s.read());
+        s.close();
+
+        StreamMetrics.Snapshot snapshot = s.getMetrics().snapshot();
+        assertEquals(3, snapshot.getWriteCalls());
+        assertEquals(121, snapshot.getBytesWritten());
+        assertEquals(1, snapshot.getReadCalls());
+        assertEquals(121, snapshot.getSeekDistance());
+        assertTrue(snapshot.toString().contains("writes=3"));
+    }
+}
@@ -0,0 +1,80 @@
+package org.catacombae.io;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class PooledReadableFileStreamTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void test1() throws Exception {
+        File f = tmp.resolve("test.bin").toFile();
+
+        byte[] data = new byte[64 * 1024];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) (i * 31);
+        Files.write(f.toPath(), data);
+
+        PooledReadableFileStream pooled = new PooledReadableFileStream(f, 4, 10);
+        assertEquals(1, pooled.getHandleCount());
+        assertEquals(data.length, pooled.length());
+
+        SynchronizedReadableRandomAccessStream shared = new SynchronizedReadableRandomAccessStream(pooled);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; ++t) {
+                int start = t * 8192;
+                futures.add(executor.submit(() -> {
+                    ReadableRandomAccessSubstream sub = new ReadableRandomAccessSubstream(shared);
+                    byte[] buf = new byte[512];
+                    for (int i = 0; i < 200; ++i) {
+                        int pos = start + (i * 512) % 8192;
+                        sub.seek(pos);
+                        sub.readFully(buf);
+                        assertArrayEquals(Arrays.copyOfRange(data, pos, pos + 512), buf);
+                    }
+                    sub.close();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(pooled.getPeakHandleCount() <= 4);
+        assertTrue(pooled.getHandleCount() >= 1);
+
+        // Once they have been idle for longer than the timeout, extra handles are closed on the next release.
+        Thread.sleep(50);
+        byte[] buf = new byte[10];
+        assertEquals(10, pooled.readAt(data.length - 10, buf, 0, 10));
+        assertArrayEquals(Arrays.copyOfRange(data, data.length - 10, data.length), buf);
+        assertEquals(-1, pooled.readAt(data.length, buf, 0, 10));
+        assertEquals(1, pooled.getHandleCount());
+
+        shared.close();
+        assertEquals(0, pooled.getHandleCount());
+        assertThrows(RuntimeIOException.class, () -> pooled.readAt(0, buf, 0, 10));
+    }
+}
@@ -0,0 +1,71 @@
+package org.catacombae.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+
+class ReadAheadReadableRandomAccessStreamTest {
+
+    @Test
+    void test1() throws IOException {
+        byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) (i * 11 + (i >> 8));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ReadAheadReadableRandomAccessStream s = new ReadAheadReadableRandomAccessStream(
+                    new ReadableByteArrayStream(data), 4096, 3, executor);
+            SynchronizedReadableRandomAccessStream sync = new SynchronizedReadableRandomAccessStream(s);
+
+            // Sequential copy through an InputStream, with odd-sized reads.
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ReadableRandomAccessInputStream in = new ReadableRandomAccessInputStream(sync);
+            byte[] buf = new byte[3001];
+            int res;
+            while ((res = in.read(buf)) > 0)
+                out.write(buf, 0, res);
+            assertArrayEquals(data, out.toByteArray());
+
+            // Random access after the sequential run.
+            byte[] small = new byte[100];
+            for (int pos : new int[] {50_000, 10, 99_900, 4090}) {
+                sync.readFullyFrom(pos, small);
+                assertArrayEquals(Arrays.copyOfRange(data, pos, pos + 100), small);
+            }
+
+            sync.close();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void test2() {
+        byte[] data = new byte[50_000];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) (i * 7);
+
+        // Prefetches that are rejected must not leave readers waiting for them.
+        ReadAheadReadableRandomAccessStream s = new ReadAheadReadableRandomAccessStream(
+                new ReadableByteArrayStream(data), 4096, 3, task -> {
+                    throw new RejectedExecutionException();
+                });
+
+        byte[] result = new byte[data.length];
+        int pos = 0;
+        while (pos < result.length)
+            pos += s.read(result, pos, Math.min(1000, result.length - pos));
+        assertArrayEquals(data, result);
+
+        s.close();
+    }
+}
@@ -0,0 +1,220 @@
+package org.catacombae.io;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+class ReadableConcatenatedStreamTest {
+
+    @TempDir
+    Path tmp;
+
+    private static byte[] pattern(int len, int seed) {
+        byte[] res = new byte[len];
+        for (int i = 0; i < len; ++i)
+            res[i] = (byte) (seed + i * 31);
+        return res;
+    }
+
+    @Test
+    void test1() {
+        byte[] a = pattern(1000, 1);
+        byte[] b = pattern(500, 2);
+
+        // [hole 100][a 200..700][b 0..500]
+        ReadableConcatenatedStream s =
+                new ReadableConcatenatedStream(new ReadableByteArrayStream(a), -100, 600);
+        s.addPart(new ReadableByteArrayStream(b), 0, 500);
+        assertEquals(1100, s.length());
+
+        byte[] expected = new byte[1100];
+        System.arraycopy(a, 0, expected, 100, 500);
+        System.arraycopy(b, 0, expected, 600, 500);
+
+        byte[] actual = new byte[1100];
+        Arrays.fill(actual, (byte) 0x55);
+        s.readFully(actual);
+        assertArrayEquals(expected, actual);
+        assertEquals(-1, s.read());
+
+        // Positional reads spanning all parts don't move the file pointer.
+        s.seek(10);
+        byte[] buf = new byte[700];
+        assertEquals(700, s.readAt(50, buf, 0, 700));
+        assertArrayEquals(Arrays.copyOfRange(expected, 50, 750), buf);
+        assertEquals(10, s.getFilePointer());
+
+        assertEquals(100, s.readAt(1000, buf, 0, 700));
+        assertEquals(-1, s.readAt(1100, buf, 0, 700));
+
+        // Substreams of a synchronized stream see the same data.
+        SynchronizedReadableRandomAccessStream sync = new SynchronizedReadableRandomAccessStream(s);
+        ReadableRandomAccessSubstream sub = new ReadableRandomAccessSubstream(sync);
+        sub.seek(590);
+        byte[] subBuf = new byte[20];
+        sub.readFully(subBuf);
+        assertArrayEquals(Arrays.copyOfRange(expected, 590, 610), subBuf);
+        sub.close();
+        sync.close();
+    }
+
+    @Test
+    void test2() {
+        // Many small parts, including empty ones and holes, over one backing array.
+        byte[] backing = pattern(100_000, 7);
+        ReadableByteArrayStream src = new ReadableByteArrayStream(backing);
+        ReadableConcatenatedStream s = new ReadableConcatenatedStream(src, 0, 10);
+
+        byte[] expected = new byte[200_000];
+        System.arraycopy(backing, 0, expected, 0, 10);
+        int expectedLength = 10;
+        for (int i = 1; i < 3000; ++i) {
+            int len = (i % 5 == 0) ? 0 : (i * 17) % 60 + 1;
+            int off = (i * 97) % (backing.length - len);
+            if (i % 7 == 0) {
+                s.addPart(null, 0, len);
+            } else {
+                s.addPart(src, off, len);
+                System.arraycopy(backing, off, expected, expectedLength, len);
+            }
+            expectedLength += len;
+        }
+        assertEquals(expectedLength, s.length());
+
+        byte[] buf = new byte[500];
+        for (int pos = 0; pos < expectedLength; pos += 313) {
+            int len = Math.min(buf.length, expectedLength - pos);
+            assertEquals(len, s.readAt(pos, buf, 0, buf.length));
+            assertArrayEquals(Arrays.copyOfRange(expected, pos, pos + len), Arrays.copyOf(buf, len));
+        }
+    }
+
+    @Test
+    void test3() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            File[] files = new File[4];
+            FileChannelStream[] streams = new FileChannelStream[files.length];
+            for (int i = 0; i < files.length; ++i) {
+                files[i] = tmp.resolve("part" + i).toFile();
+                streams[i] = new FileChannelStream(files[i]);
+                streams[i].setLength(1000);
+            }
+
+            // Use the middle 500 bytes of every file.
+            ConcatenatedStream s = new ConcatenatedStream(streams[0], 250, 500);
+            for (int i = 1; i < streams.length; ++i)
+                s.addPart(streams[i], 250, 500);
+            s.setParallelExecutor(executor);
+
+            byte[] data = pattern(2000, 3);
+            s.seek(0);
+            s.write(data, 0, 1200);
+            s.write(data, 1200, 800);
+            assertEquals(2000, s.getFilePointer());
+
+            byte[] part = new byte[500];
+            ReadableFileChannelStream third = new ReadableFileChannelStream(files[2]);
+            third.seek(250);
+            third.readFully(part);
+            assertArrayEquals(Arrays.copyOfRange(data, 1000, 1500), part);
+            third.close();
+
+            byte[] actual = new byte[2000];
+            assertEquals(1999, s.readAt(1, actual, 0, 2000));
+            assertArrayEquals(Arrays.copyOfRange(data, 1, 2000), Arrays.copyOf(actual, 1999));
+            s.close();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void test4() throws Exception {
+        byte[] a = pattern(3000, 4);
+        byte[] b = pattern(700, 5);
+        Path source = tmp.resolve("source");
+        Files.write(source, a);
+
+        // [hole 10][source 0..2000][b 0..700]
+        ReadableConcatenatedStream s = new ReadableConcatenatedStream(new ReadableFileStream(source.toFile()), -10, 2010);
+        s.addPart(new ReadableByteArrayStream(b), 0, 700);
+        byte[] expected = new byte[2710];
+        System.arraycopy(a, 0, expected, 10, 2000);
+        System.arraycopy(b, 0, expected, 2010, 700);
+
+        Path copy = tmp.resolve("copy");
+        try (FileChannel out = FileChannel.open(copy, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            assertEquals(2705, s.transferTo(5, 3000, out));
+        }
+        assertArrayEquals(Arrays.copyOfRange(expected, 5, 2710), Files.readAllBytes(copy));
+        assertEquals(0, s.getFilePointer());
+        s.close();
+
+        // Write the copy back into the middle of two files.
+        FileStream first = new FileStream(tmp.resolve("first").toFile());
+        first.setLength(2000);
+        FileStream second = new FileStream(tmp.resolve("second").toFile());
+        ConcatenatedStream c = new ConcatenatedStream(first, 500, 1500);
+        c.addPart(second, 100, 1500);
+        try (FileChannel in = FileChannel.open(copy, StandardOpenOption.READ)) {
+            assertEquals(2705, c.transferFrom(in, 100, 2705));
+        }
+
+        byte[] actual = new byte[2705];
+        c.seek(100);
+        c.readFully(actual);
+        assertArrayEquals(Arrays.copyOfRange(expected, 5, 2710), actual);
+        assertEquals(1405, second.length());
+        c.close();
+    }
+
+    @Test
+    void test5() throws Exception {
+        byte[] a = pattern(4000, 6);
+        Path source = tmp.resolve("source");
+        Files.write(source, a);
+
+        // [hole 100][source 0..1000][source 3000..4000]
+        ReadableConcatenatedStream s = new ReadableConcatenatedStream(new ReadableFileStream(source.toFile()), -100, 1100);
+        s.addPart(new ReadableFileChannelStream(source.toFile()), 3000, 1000);
+        byte[] expected = new byte[2100];
+        System.arraycopy(a, 0, expected, 100, 1000);
+        System.arraycopy(a, 3000, expected, 1100, 1000);
+
+        SynchronizedReadableRandomAccessStream sync = new SynchronizedReadableRandomAccessStream(s);
+        ReadableRandomAccessSubstream sub = new ReadableRandomAccessSubstream(sync);
+        ByteBuffer first = ByteBuffer.allocateDirect(1500);
+        ByteBuffer second = ByteBuffer.allocate(1000);
+        CompletableFuture<Integer> f1 = sub.readAsync(50, first);
+        CompletableFuture<Integer> f2 = sub.readAsync(1600, second);
+        CompletableFuture<Integer> f3 = sub.readAsync(2100, ByteBuffer.allocate(10));
+
+        assertEquals(1500, f1.get());
+        assertEquals(500, f2.get());
+        assertEquals(-1, f3.get());
+        assertEquals(0, sub.getFilePointer());
+
+        byte[] actual = new byte[1500];
+        first.flip().get(actual);
+        assertArrayEquals(Arrays.copyOfRange(expected, 50, 1550), actual);
+        assertEquals(500, second.position());
+        assertArrayEquals(Arrays.copyOfRange(expected, 1600, 2100), Arrays.copyOf(second.array(), 500));
+        sub.close();
+        sync.close();
+    }
+}
@@ -0,0 +1,62 @@
+package org.catacombae.io;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+
+class ReadableDirectFileStreamTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void test1() throws Exception {
+        File f = tmp.resolve("test.bin").toFile();
+
+        // Not a multiple of any block size.
+        byte[] data = new byte[100_003];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) (i * 17);
+        Files.write(f.toPath(), data);
+
+        assumeTrue(ReadableDirectFileStream.isSupported(f), "O_DIRECT not supported on " + tmp);
+
+        ReadableDirectFileStream in = new ReadableDirectFileStream(f, 10000);
+        assertEquals(0, in.getBufferSize() % in.getBlockSize());
+        assertEquals(data.length, in.length());
+
+        // Small unaligned sequential reads, served partly from the kept buffer.
+        byte[] buf = new byte[333];
+        in.seek(7);
+        for (int i = 0; i < 100; ++i) {
+            long pos = in.getFilePointer();
+            in.readFully(buf);
+            assertArrayEquals(Arrays.copyOfRange(data, (int) pos, (int) pos + buf.length), buf);
+        }
+
+        // A read spanning several buffers.
+        byte[] big = new byte[50_000];
+        assertEquals(big.length, in.readAt(12_345, big, 0, big.length));
+        assertArrayEquals(Arrays.copyOfRange(data, 12_345, 12_345 + big.length), big);
+
+        // The unaligned tail of the file.
+        assertEquals(3, in.readAt(data.length - 3, buf, 0, buf.length));
+        assertArrayEquals(Arrays.copyOfRange(data, data.length - 3, data.length), Arrays.copyOf(buf, 3));
+        assertEquals(-1, in.readAt(data.length, buf, 0, buf.length));
+
+        byte[] all = new byte[data.length];
+        in.seek(0);
+        in.readFully(all);
+        assertArrayEquals(data, all);
+        in.close();
+    }
+}
@@ -0,0 +1,47 @@
+package org.catacombae.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+class ReadableMappedFileStreamTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void test1() throws IOException {
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) (i * 13);
+        File f = tmp.resolve("test.bin").toFile();
+        Files.write(f.toPath(), data);
+
+        // Small windows with a limit of two mapped at a time forces remapping.
+        ReadableMappedFileStream s = new ReadableMappedFileStream(f, 1024, 2, false);
+        assertEquals(10000, s.length());
+
+        byte[] actual = new byte[10000];
+        s.readFully(actual);
+        assertArrayEquals(data, actual);
+        assertEquals(-1, s.read());
+
+        byte[] buf = new byte[3000];
+        for (long pos : new long[] {9000, 0, 5000, 1000}) {
+            int len = (int) Math.min(buf.length, data.length - pos);
+            assertEquals(len, s.readAt(pos, buf, 0, buf.length));
+            assertArrayEquals(Arrays.copyOfRange(data, (int) pos, (int) pos + len), Arrays.copyOf(buf, len));
+        }
+        assertEquals(10000, s.getFilePointer());
+        s.close();
+    }
+}
@@ -0,0 +1,38 @@
+package org.catacombae.io;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class ReferenceCounterTest {
+
+    @Test
+    void test1() {
+        Object owner = new Object();
+        Object a = new Object();
+        Object b = new Object();
+        ReferenceCounter counter = new ReferenceCounter(owner, true, 0);
+        assertEquals(1, counter.getCount());
+
+        counter.add(a);
+        counter.add(b);
+        assertThrows(IllegalStateException.class, () -> counter.add(a));
+        assertEquals(3, counter.getCount());
+
+        assertFalse(counter.remove(a));
+        assertThrows(RuntimeException.class, () -> counter.remove(a));
+        assertFalse(counter.close(owner));
+        assertTrue(counter.isClosed());
+        assertThrows(IllegalStateException.class, () -> counter.close(owner));
+        assertThrows(RuntimeIOException.class, () -> counter.add(a));
+
+        // Dropping the last reference after close releases the owner.
+        assertTrue(counter.remove(b));
+        assertEquals(0, counter.getCount());
+        assertThrows(RuntimeException.class, () -> counter.remove(b));
+    }
+}
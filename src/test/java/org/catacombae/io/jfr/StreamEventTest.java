@@ -0,0 +1,82 @@
+package org.catacombae.io.jfr;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.catacombae.io.CachingReadableRandomAccessStream;
+import org.catacombae.io.FileStream;
+import org.catacombae.io.ReadableFileStream;
+import org.catacombae.io.SynchronizedReadableRandomAccessStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class StreamEventTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void test1() throws Exception {
+        File f = tmp.resolve("test.bin").toFile();
+        Path dump = tmp.resolve("test.jfr");
+
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] {"Read", "Write", "Seek", "CacheMiss"})
+                recording.enable("org.catacombae.io." + name).withThreshold(Duration.ZERO);
+            recording.start();
+
+            FileStream out = new FileStream(f);
+            out.write(new byte[1000]);
+            out.close();
+
+            SynchronizedReadableRandomAccessStream in = new SynchronizedReadableRandomAccessStream(
+                    new CachingReadableRandomAccessStream(new ReadableFileStream(f), 100, 1000));
+            byte[] buf = new byte[50];
+            in.readFrom(120, buf, 0, 50);
+            in.seek(10);
+            in.close();
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                .filter(e -> e.getEventType().getName().startsWith("org.catacombae.io."))
+                .collect(Collectors.toList());
+
+        RecordedEvent write = find(events, "org.catacombae.io.Write");
+        assertEquals(0, write.getLong("position"));
+        assertEquals(1000, write.getLong("length"));
+        assertEquals(f.getPath(), write.getString("path"));
+
+        RecordedEvent miss = find(events, "org.catacombae.io.CacheMiss");
+        assertEquals(100, miss.getLong("position"));
+        assertEquals(100, miss.getLong("length"));
+
+        // The positional read of the file stream under the cache, and the read of the synchronized stream.
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("org.catacombae.io.Read") &&
+                e.getLong("position") == 120 && e.getLong("bytesRead") == 50 &&
+                e.getString("stream").startsWith(SynchronizedReadableRandomAccessStream.class.getName())));
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("org.catacombae.io.Read") &&
+                e.getLong("position") == 100 && f.getPath().equals(e.getString("path"))));
+
+        assertEquals(10, find(events, "org.catacombae.io.Seek").getLong("position"));
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).findFirst()
+                .orElseThrow(() -> new AssertionError("no " + name + " event"));
+    }
+}
@@ -0,0 +1,74 @@
+package org.catacombae.util;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class ArrayKernelsTest {
+
+    @Test
+    void test1() {
+        byte[] data = new byte[1100];
+        new Random(1).nextBytes(data);
+
+        // Unaligned offsets and counts that leave a partial vector.
+        for (int offset : new int[] {0, 1, 3, 7}) {
+            for (int count : new int[] {0, 1, 5, 63, 131}) {
+                short[] shorts = new short[count + 2];
+                ArrayKernels.readShortArrayBE(data, offset, shorts, 1, count);
+                char[] chars = new char[count + 2];
+                ArrayKernels.readCharArrayLE(data, offset, chars, 1, count);
+                int[] ints = new int[count + 2];
+                ArrayKernels.readIntArrayBE(data, offset, ints, 1, count);
+                long[] longs = new long[count + 2];
+                ArrayKernels.readLongArrayLE(data, offset, longs, 1, count);
+
+                for (int i = 0; i < count; ++i) {
+                    assertEquals(Util.readShortBE(data, offset + i * 2), shorts[1 + i]);
+                    assertEquals(Util.readCharLE(data, offset + i * 2), chars[1 + i]);
+                    assertEquals(Util.readIntBE(data, offset + i * 4), ints[1 + i]);
+                    assertEquals(Util.readLongLE(data, offset + i * 8), longs[1 + i]);
+                }
+                assertEquals(0, ints[0]);
+                assertEquals(0, ints[count + 1]);
+
+                ArrayKernels.byteSwap(ints, 1, count);
+                ArrayKernels.byteSwap(longs, 1, count);
+                ArrayKernels.byteSwap(shorts, 1, count);
+                for (int i = 0; i < count; ++i) {
+                    assertEquals(Util.readIntLE(data, offset + i * 4), ints[1 + i]);
+                    assertEquals(Util.readLongBE(data, offset + i * 8), longs[1 + i]);
+                    assertEquals(Util.readShortLE(data, offset + i * 2), shorts[1 + i]);
+                }
+            }
+        }
+
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> ArrayKernels.readIntArrayBE(data, 1, new int[300], 0, 275));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> ArrayKernels.readLongArrayLE(data, 0, new long[10], 5, 6));
+    }
+
+    @Test
+    void test2() {
+        byte[] data = new byte[1000];
+        new Random(2).nextBytes(data);
+
+        for (int offset : new int[] {0, 1, 13}) {
+            for (int length : new int[] {0, 1, 2, 15, 16, 17, 200, 987}) {
+                byte[] swapped = data.clone();
+                assertEquals(swapped, Util.byteSwap(swapped, offset, length));
+
+                byte[] expected = data.clone();
+                for (int i = 0; i < length; ++i)
+                    expected[offset + i] = data[offset + length - 1 - i];
+                assertArrayEquals(expected, swapped);
+            }
+        }
+    }
+}
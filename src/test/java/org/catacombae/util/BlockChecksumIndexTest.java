@@ -0,0 +1,63 @@
+package org.catacombae.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+import org.catacombae.io.ReadableByteArrayStream;
+import org.catacombae.io.RuntimeIOException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class BlockChecksumIndexTest {
+
+    @Test
+    void test1() {
+        byte[] data = new byte[10_050];
+        new Random(3).nextBytes(data);
+
+        AtomicLong bytesRead = new AtomicLong();
+        ReadableByteArrayStream s = new ReadableByteArrayStream(data) {
+            @Override
+            public int readAt(long pos, byte[] b, int off, int len) {
+                int res = super.readAt(pos, b, off, len);
+                bytesRead.addAndGet(Math.max(res, 0));
+                return res;
+            }
+        };
+
+        BlockChecksumIndex index = BlockChecksumIndex.build(s, 100);
+        assertEquals(101, index.getBlockCount());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo(out);
+        BlockChecksumIndex loaded = BlockChecksumIndex.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(index.getLength(), loaded.getLength());
+
+        long[][] ranges = {{0, 10_050}, {0, 0}, {5, 10}, {50, 100}, {100, 100}, {99, 9_902}, {1234, 5678},
+                {10_000, 50}, {9_990, 60}, {3, 10_047}};
+        for (long[] range : ranges) {
+            CRC32C expected = new CRC32C();
+            expected.update(data, (int) range[0], (int) range[1]);
+
+            bytesRead.set(0);
+            assertEquals(expected.getValue(), loaded.checksum(s, range[0], range[1]));
+            // At most the two edge blocks are read.
+            assertTrue(bytesRead.get() < 200);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> loaded.checksum(s, 10_000, 51));
+
+        byte[] corrupt = out.toByteArray();
+        corrupt[30] ^= 1;
+        assertThrows(RuntimeIOException.class,
+                () -> BlockChecksumIndex.readFrom(new ByteArrayInputStream(corrupt)));
+    }
+}
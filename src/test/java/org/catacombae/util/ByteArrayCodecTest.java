@@ -0,0 +1,78 @@
+package org.catacombae.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class ByteArrayCodecTest {
+
+    @Test
+    void test1() {
+        byte[] data = new byte[64];
+        new Random(1).nextBytes(data);
+        ByteBuffer be = ByteBuffer.wrap(data).order(ByteOrder.BIG_ENDIAN);
+        ByteBuffer le = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+
+        // Every offset, so that all alignments are read.
+        for (int i = 0; i + 8 <= data.length; ++i) {
+            assertEquals(be.getShort(i), Util.readShortBE(data, i));
+            assertEquals(le.getShort(i), Util.readShortLE(data, i));
+            assertEquals(be.getChar(i), Util.readCharBE(data, i));
+            assertEquals(le.getChar(i), Util.readCharLE(data, i));
+            assertEquals(be.getInt(i), Util.readIntBE(data, i));
+            assertEquals(le.getInt(i), Util.readIntLE(data, i));
+            assertEquals(be.getLong(i), Util.readLongBE(data, i));
+            assertEquals(le.getLong(i), Util.readLongLE(data, i));
+        }
+
+        assertThrows(IndexOutOfBoundsException.class, () -> ByteArrayCodec.readIntBE(data, 61));
+        assertThrows(IndexOutOfBoundsException.class, () -> ByteArrayCodec.writeLongLE(data, -1, 0));
+    }
+
+    @Test
+    void test2() {
+        long value = 0x0123456789abcdefL;
+        byte[] expected = new byte[11];
+        byte[] actual = new byte[11];
+
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            boolean bigEndian = order == ByteOrder.BIG_ENDIAN;
+            ByteBuffer bb = ByteBuffer.wrap(expected).order(order);
+
+            bb.putLong(3, value);
+            if (bigEndian)
+                Util.arrayPutBE(actual, 3, value);
+            else
+                Util.arrayPutLE(actual, 3, value);
+            assertArrayEquals(expected, actual);
+
+            bb.putInt(1, (int) value);
+            if (bigEndian)
+                ByteArrayCodec.writeIntBE(actual, 1, (int) value);
+            else
+                ByteArrayCodec.writeIntLE(actual, 1, (int) value);
+            assertArrayEquals(expected, actual);
+
+            bb.putShort(9, (short) value);
+            bb.putChar(0, (char) (value >>> 16));
+            if (bigEndian) {
+                ByteArrayCodec.writeShortBE(actual, 9, (short) value);
+                ByteArrayCodec.writeCharBE(actual, 0, (char) (value >>> 16));
+            } else {
+                ByteArrayCodec.writeShortLE(actual, 9, (short) value);
+                ByteArrayCodec.writeCharLE(actual, 0, (char) (value >>> 16));
+            }
+            assertArrayEquals(expected, actual);
+        }
+
+        assertEquals(Long.reverseBytes(value), Util.byteSwap(value));
+        assertArrayEquals(new byte[] {1, 35, 69, 103}, Util.toByteArrayBE((int) (value >>> 32)));
+    }
+}
@@ -0,0 +1,89 @@
+package org.catacombae.util;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+import org.catacombae.io.ReadableByteArrayStream;
+import org.catacombae.io.ReadableCRC32FilterStream;
+import org.catacombae.io.ReadableRandomAccessStream;
+import org.catacombae.io.RuntimeIOException;
+import org.catacombae.util.ChecksumUtil.Algorithm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class ChecksumUtilTest {
+
+    private static long sequential(Checksum checksum, byte[] data, int off, int len) {
+        checksum.update(data, off, len);
+        return checksum.getValue();
+    }
+
+    @Test
+    void test1() {
+        byte[] data = new byte[100_000];
+        new Random(1).nextBytes(data);
+
+        for (int split : new int[] {0, 1, 777, 65536, data.length}) {
+            assertEquals(sequential(new CRC32(), data, 0, data.length),
+                    ChecksumUtil.crc32Combine(sequential(new CRC32(), data, 0, split),
+                            sequential(new CRC32(), data, split, data.length - split), data.length - split));
+            assertEquals(sequential(new CRC32C(), data, 0, data.length),
+                    ChecksumUtil.crc32cCombine(sequential(new CRC32C(), data, 0, split),
+                            sequential(new CRC32C(), data, split, data.length - split), data.length - split));
+            assertEquals(sequential(new Adler32(), data, 0, data.length),
+                    ChecksumUtil.adler32Combine(sequential(new Adler32(), data, 0, split),
+                            sequential(new Adler32(), data, split, data.length - split), data.length - split));
+        }
+    }
+
+    @Test
+    void test2() throws Exception {
+        byte[] data = new byte[100_000];
+        new Random(2).nextBytes(data);
+        ReadableRandomAccessStream s = new ReadableByteArrayStream(data);
+
+        // An unaligned region split into many uneven chunks.
+        int off = 13;
+        int len = data.length - 50;
+        assertEquals(sequential(new CRC32(), data, off, len),
+                ChecksumUtil.checksum(s, off, len, Algorithm.CRC32, 1000, 4, null));
+        assertEquals(sequential(new CRC32C(), data, off, len),
+                ChecksumUtil.checksum(s, off, len, Algorithm.CRC32C, 999, 3, null));
+        assertEquals(sequential(new Adler32(), data, off, len),
+                ChecksumUtil.checksum(s, off, len, Algorithm.ADLER32, 4096, 8, null));
+        assertEquals(new CRC32().getValue(), ChecksumUtil.checksum(s, 0, 0, Algorithm.CRC32));
+        assertArrayEquals(Util.toByteArrayBE((int) sequential(new CRC32(), data, 0, data.length)),
+                ChecksumUtil.digest(s, 0, data.length, Algorithm.CRC32));
+
+        byte[] region = Arrays.copyOfRange(data, off, off + len);
+        assertArrayEquals(MessageDigest.getInstance("MD5").digest(region),
+                ChecksumUtil.digest(s, off, len, Algorithm.MD5, 1000, null));
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(region),
+                ChecksumUtil.digest(s, off, len, Algorithm.SHA_256, 3000, null));
+
+        assertThrows(RuntimeIOException.class,
+                () -> ChecksumUtil.checksum(s, 1, data.length, Algorithm.CRC32, 1000, 4, null));
+        assertThrows(RuntimeIOException.class,
+                () -> ChecksumUtil.digest(s, 1, data.length, Algorithm.SHA_256, 1000, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> ChecksumUtil.checksum(s, 0, data.length, Algorithm.MD5));
+
+        // The filter stream checksums the bytes it returns.
+        ReadableCRC32FilterStream filter = new ReadableCRC32FilterStream(new ReadableByteArrayStream(data));
+        byte[] buf = new byte[1000];
+        filter.read();
+        while (filter.read(buf, 10, 500) > 0)
+            continue;
+        assertEquals((int) ChecksumUtil.checksum(s, 0, data.length, Algorithm.CRC32), filter.getChecksumValue());
+    }
+}